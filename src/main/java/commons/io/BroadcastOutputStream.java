@@ -0,0 +1,507 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class writes the same bytes to several output streams (the sinks).
+ *
+ * <p>
+ * Bytes are copied once into chunks which are shared by all sinks. Chunks are
+ * reference counted and recycled once all sinks have written them. Each sink
+ * owns a bounded queue of chunks and a thread which writes them, so that a
+ * slow sink does not stall the other ones. When the queue of a sink is full,
+ * the behavior depends on the {@link Backpressure} policy.
+ * </p>
+ *
+ * <p>
+ * Errors raised by a sink do not prevent the other sinks from receiving bytes.
+ * The first error is reported when the stream is closed.
+ * </p>
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class BroadcastOutputStream extends OutputStream {
+
+    /**
+     * The policies applied when the queue of a sink is full.
+     */
+    public static enum Backpressure {
+        /** Wait until the sink has written some chunks. */
+        BLOCK,
+        /** Discard the chunk for this sink. */
+        DROP,
+        /** Append the chunk to a temporary file read back by the sink. */
+        SPILL
+    }
+
+    final public static int DEFAULT_CHUNK_SIZE = 64*1024;
+    final public static int DEFAULT_QUEUE_CAPACITY = 16;
+
+    /**
+     * The period in milliseconds at which a thread waiting for some space in
+     * the queue of a sink checks that the thread of the sink is still alive.
+     */
+    final private static long PUT_PERIOD = 100;
+
+    /** Marker chunks sent to sinks. */
+    final private static Chunk FLUSH = new Chunk(null,0);
+    final private static Chunk EOF = new Chunk(null,0);
+
+    private Sink[] sinks;
+    private Backpressure policy;
+    private int chunkSize;
+
+    /** The chunks which are not referenced by any sink. */
+    private Queue<Chunk> pool = new ConcurrentLinkedQueue<>();
+
+    /** The chunk currently being filled. */
+    private Chunk current;
+
+    private boolean closed;
+
+    public BroadcastOutputStream( OutputStream... oss ) {
+        this(DEFAULT_CHUNK_SIZE,DEFAULT_QUEUE_CAPACITY,Backpressure.BLOCK,oss);
+    }
+
+    public BroadcastOutputStream( Backpressure policy, OutputStream... oss ) {
+        this(DEFAULT_CHUNK_SIZE,DEFAULT_QUEUE_CAPACITY,policy,oss);
+    }
+
+    /**
+     * @param chunkSize      the size of the chunks
+     * @param queueCapacity  the maximum number of chunks queued for each sink
+     * @param policy         the policy applied when the queue of a sink is full
+     * @param oss            the sinks
+     */
+    public BroadcastOutputStream(
+            int chunkSize, int queueCapacity, Backpressure policy,
+            OutputStream... oss ) {
+
+        if ( oss.length == 0 )
+            throw new IllegalArgumentException(
+                    "At least one output stream should be specified");
+
+        this.chunkSize = chunkSize;
+        this.policy = policy;
+        current = acquire();
+
+        sinks = new Sink[ oss.length ];
+        for ( int i=0 ; i < oss.length ; i++ ) {
+            sinks[i] = new Sink(oss[i],queueCapacity);
+            Thread t = new Thread(sinks[i],"BroadcastOutputStream-sink-"+i);
+            t.setDaemon(true);
+            sinks[i].thread = t;
+            t.start();
+        }
+    }
+
+    @Override
+    public void write( int b ) throws IOException {
+        ensureOpen();
+        current.data[current.length++] = (byte) b;
+        if ( current.length == chunkSize ) {
+            publish();
+        }
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len ) throws IOException {
+        ensureOpen();
+        while ( len > 0 ) {
+            int n = Math.min( len, chunkSize-current.length );
+            System.arraycopy(b,off,current.data,current.length,n);
+            current.length += n;
+            off += n;
+            len -= n;
+            if ( current.length == chunkSize ) {
+                publish();
+            }
+        }
+    }
+
+    /**
+     * Send the bytes written so far to the sinks and request them to flush.
+     * This method does not wait for the sinks to be flushed.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if ( current.length > 0 ) {
+            publish();
+        }
+        for (Sink sink : sinks) {
+            sink.offerMarker(FLUSH);
+        }
+    }
+
+    /**
+     * Wait for all sinks to write the pending chunks and close them.
+     *
+     * @throws IOException  the first error raised by a sink, if any
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed)  return;
+
+        if ( current.length > 0 ) {
+            publish();
+        }
+        closed = true;
+
+        IOException error = null;
+        for (Sink sink : sinks) {
+            try {
+                sink.put(EOF);
+                sink.thread.join();
+            }
+            catch( InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            try {
+                sink.close();
+            }
+            catch( IOException ioe ) {
+                if ( sink.error == null )  sink.error = ioe;
+            }
+            if ( sink.error != null ) {
+                if ( error == null )  error = sink.error;
+                else  error.addSuppressed(sink.error);
+            }
+        }
+
+        if ( error != null ) {
+            throw error;
+        }
+    }
+
+    /**
+     * Return the number of bytes discarded for the specified sink with the
+     * {@link Backpressure#DROP} policy.
+     *
+     * @param sink  the index of the sink
+     */
+    public long getDroppedBytes( int sink ) {
+        return sinks[sink].dropped.get();
+    }
+
+
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private Chunk acquire() {
+        Chunk chunk = pool.poll();
+        if ( chunk == null ) {
+            chunk = new Chunk(pool,chunkSize);
+        }
+        return chunk;
+    }
+
+    /**
+     * Hand the current chunk to all sinks and start a new one.
+     */
+    private void publish() throws IOException {
+        Chunk chunk = current;
+        current = acquire();
+        chunk.refs.set(sinks.length);
+        for (Sink sink : sinks) {
+            sink.offer(chunk);
+        }
+    }
+
+    /**
+     * A reference counted array of bytes.
+     */
+    private static class Chunk {
+
+        final Queue<Chunk> pool;
+        final byte[] data;
+        int length;
+        final AtomicInteger refs = new AtomicInteger();
+
+        Chunk( Queue<Chunk> pool, int size ) {
+            this.pool = pool;
+            data = size==0 ? null : new byte[size];
+        }
+
+        /** Return the chunk to the pool once no sink references it anymore. */
+        void release() {
+            if ( refs.decrementAndGet() == 0 ) {
+                length = 0;
+                pool.add(this);
+            }
+        }
+    }
+
+    /**
+     * An output stream with its queue of chunks. Instances are run by a
+     * dedicated thread which writes the queued chunks.
+     */
+    private class Sink implements Runnable {
+
+        final OutputStream os;
+        final BlockingQueue<Chunk> queue;
+        Thread thread;
+        volatile IOException error;
+        final AtomicLong dropped = new AtomicLong();
+
+        /*
+         * Spill file for the SPILL policy. Bytes between spillRead and
+         * spillWrite are still to be written to the sink. Guarded by this.
+         */
+        private File spillFile;
+        private RandomAccessFile spill;
+        private long spillRead, spillWrite;
+        private byte[] spillBuffer;
+
+        Sink( OutputStream os, int capacity ) {
+            this.os = os;
+            queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Hand a chunk to this sink. Called by the thread writing to the
+         * broadcast stream.
+         */
+        void offer( Chunk chunk ) throws IOException {
+
+            if ( error != null ) {
+                // The sink failed: do not queue anything anymore
+                chunk.release();
+                return;
+            }
+
+            switch(policy) {
+                case BLOCK :
+                    boolean queued = false;
+                    try {
+                        queued = put(chunk);
+                    }
+                    finally {
+                        if ( ! queued )  chunk.release();
+                    }
+                    break;
+                case DROP :
+                    if ( ! queue.offer(chunk) ) {
+                        dropped.addAndGet(chunk.length);
+                        chunk.release();
+                    }
+                    break;
+                case SPILL :
+                    synchronized(this) {
+                        /*
+                         * Once bytes have been spilled, keep spilling until the
+                         * sink has caught up, to preserve the order of bytes.
+                         */
+                        if ( spillWrite > spillRead || ! queue.offer(chunk) ) {
+                            try {
+                                spill(chunk);
+                            }
+                            finally {
+                                chunk.release();
+                            }
+                        }
+                    }
+                    break;
+            }
+        }
+
+        void offerMarker( Chunk marker ) throws IOException {
+            if ( policy == Backpressure.BLOCK ) {
+                put(marker);
+            }
+            else {
+                // Flushing is only a hint: skip it if the queue is full
+                queue.offer(marker);
+            }
+        }
+
+        /**
+         * Queue the specified chunk, waiting for some space if needed.
+         *
+         * @return  false if the thread of this sink has terminated, in which
+         *          case the chunk has not been queued
+         */
+        boolean put( Chunk chunk ) throws InterruptedIOException {
+            try {
+                while ( ! queue.offer(chunk,PUT_PERIOD,TimeUnit.MILLISECONDS) ) {
+                    if ( ! thread.isAlive() )  return false;
+                }
+                return true;
+            }
+            catch( InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+
+        public void run() {
+            while (true) {
+                Chunk chunk;
+                try {
+                    chunk = queue.poll();
+                    if ( chunk == null ) {
+                        if ( error==null && drainSpill() ) {
+                            continue;
+                        }
+                        chunk = queue.take();
+                    }
+                }
+                catch( InterruptedException ie ) {
+                    if ( error == null ) {
+                        error = new InterruptedIOException(
+                                "Sink thread interrupted");
+                    }
+                    return;
+                }
+                catch( IOException ioe ) {
+                    error = ioe;
+                    continue;
+                }
+
+                if ( chunk == EOF ) {
+                    if ( error == null ) {
+                        try {
+                            while ( drainSpill() );
+                            os.flush();
+                        }
+                        catch( IOException ioe ) {
+                            error = ioe;
+                        }
+                    }
+                    return;
+                }
+                if ( chunk == FLUSH ) {
+                    if ( error == null ) {
+                        try {
+                            os.flush();
+                        }
+                        catch( IOException ioe ) {
+                            error = ioe;
+                        }
+                    }
+                    continue;
+                }
+
+                /*
+                 * Once the sink failed, keep on consuming the queue to release
+                 * the chunks and to not block the writing thread.
+                 */
+                try {
+                    if ( error == null ) {
+                        os.write(chunk.data,0,chunk.length);
+                    }
+                }
+                catch( IOException ioe ) {
+                    error = ioe;
+                }
+                finally {
+                    chunk.release();
+                }
+            }
+        }
+
+        /**
+         * Append the specified chunk to the spill file. The caller must hold
+         * the lock of this sink.
+         */
+        private void spill( Chunk chunk ) throws IOException {
+            if ( spill == null ) {
+                spillFile = File.createTempFile("broadcast",".spill");
+                spillFile.deleteOnExit();
+                spill = new RandomAccessFile(spillFile,"rw");
+                spillBuffer = new byte[chunkSize];
+            }
+            spill.seek(spillWrite);
+            spill.write(chunk.data,0,chunk.length);
+            spillWrite += chunk.length;
+        }
+
+        /**
+         * Write to the sink some bytes read from the spill file. Nothing is
+         * written while chunks are queued: they have been queued before the
+         * spilled bytes.
+         *
+         * @return  true if some bytes have been written
+         */
+        private boolean drainSpill() throws IOException {
+
+            int n;
+            synchronized(this) {
+                if ( spillWrite==spillRead || ! queue.isEmpty() ) {
+                    return false;
+                }
+                n = (int) Math.min( spillBuffer.length, spillWrite-spillRead );
+                spill.seek(spillRead);
+                spill.readFully(spillBuffer,0,n);
+                spillRead += n;
+                if ( spillRead == spillWrite ) {
+                    // The sink caught up: the next chunks are queued again
+                    spillRead = spillWrite = 0;
+                    spill.setLength(0);
+                }
+            }
+
+            /*
+             * Write outside of the lock not to block the writing thread. The
+             * spill buffer is only used by the thread of this sink.
+             */
+            os.write(spillBuffer,0,n);
+            return true;
+        }
+
+        void close() throws IOException {
+            try {
+                os.close();
+            }
+            finally {
+                if ( spill != null ) {
+                    spill.close();
+                    spillFile.delete();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,433 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class updates a destination file so that its content becomes the same
+ * as the one of a source file, while writing as few bytes as possible.
+ *
+ * <p>
+ * The algorithm is the one of rsync. The destination file is split into
+ * blocks. A weak rolling checksum and a strong hash (MD5) are computed for each
+ * block. The source file is scanned with the rolling checksum to locate, at
+ * any offset, the blocks which already exist in the destination file. The
+ * remaining regions of the source file are literal data.
+ * </p>
+ *
+ * <p>
+ * When all matching blocks are found at the same offset in both files, only
+ * the literal regions are rewritten in place. Otherwise, the new content is
+ * assembled in a temporary file, from blocks of the destination file and from
+ * literal data, which then atomically replaces the destination file.
+ * </p>
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class DeltaCopy {
+
+    final public static int DEFAULT_BLOCK_SIZE = 8*1024;
+
+    /** The size of the buffer used to scan the source file. */
+    final private static int SCAN_BUFFER_SIZE = 1024*1024;
+
+    /**
+     * Update the destination file with the content of the source file.
+     *
+     * @param src        the source file
+     * @param dst        the destination file
+     * @param blockSize  the size of the blocks
+     * @return           the number of bytes written to the destination file
+     */
+    public static long update( File src, File dst, int blockSize )
+    throws IOException {
+
+        if ( blockSize <= 0 )
+            throw new IllegalArgumentException(
+                    "Parameter 3 (blockSize) should be strictly positive");
+
+        if ( ! dst.exists() ) {
+            return rebuild(src,dst,new ArrayList<Op>(),blockSize);
+        }
+
+        Map<Integer,List<Integer>> weaks = new HashMap<>();
+        List<byte[]> strongs = new ArrayList<>();
+        signatures(dst,blockSize,weaks,strongs);
+        List<Op> ops = scan(src,blockSize,weaks,strongs);
+
+        boolean inPlace = true;
+        for (Op op : ops) {
+            if ( op.block!=-1 && (long)op.block*blockSize!=op.offset ) {
+                inPlace = false;
+                break;
+            }
+        }
+
+        if (inPlace) {
+            return patch(src,dst,ops);
+        }
+        return rebuild(src,dst,ops,blockSize);
+    }
+
+
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+
+    /**
+     * An operation to produce the new content: either a block of the
+     * destination file (block != -1) or literal data read from the source
+     * file. offset is the position in the source file.
+     */
+    private static class Op {
+        final int block;
+        final long offset;
+        final long length;
+        Op( int block, long offset, long length ) {
+            this.block = block;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Compute the weak checksums and the strong hashes of the full blocks of
+     * the specified file. Weak checksums are indexed in a map whose values are
+     * the indexes of the blocks.
+     */
+    private static void signatures(
+            File file, int blockSize,
+            Map<Integer,List<Integer>> weaks, List<byte[]> strongs )
+    throws IOException {
+
+        MessageDigest md = md5();
+        byte[] block = new byte[blockSize];
+        RandomAccessFile raf = new RandomAccessFile(file,"r");
+        try {
+            long nbBlocks = raf.length() / blockSize;
+            for ( int i=0 ; i < nbBlocks ; i++ ) {
+                raf.readFully(block);
+                int weak = weak(block,0,blockSize);
+                List<Integer> indexes = weaks.get(weak);
+                if ( indexes == null ) {
+                    indexes = new ArrayList<>(1);
+                    weaks.put(weak,indexes);
+                }
+                indexes.add(i);
+                strongs.add( md.digest(block) );
+            }
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Scan the source file with the rolling checksum and return the
+     * operations producing its content.
+     */
+    private static List<Op> scan(
+            File src, int blockSize,
+            Map<Integer,List<Integer>> weaks, List<byte[]> strongs )
+    throws IOException {
+
+        List<Op> ops = new ArrayList<>();
+        MessageDigest md = md5();
+        Window w = new Window(src,Math.max(SCAN_BUFFER_SIZE,2*blockSize));
+
+        try {
+            long length = w.length;
+            long p = 0;
+            long literal = 0;
+            int a = 0, b = 0;
+
+            if ( length >= blockSize ) {
+                w.ensure(0,blockSize);
+                int weak = weak(w.buffer,0,blockSize);
+                a = weak & 0xffff;
+                b = weak >>> 16;
+            }
+
+            while ( p+blockSize <= length ) {
+
+                int offset = w.ensure(p,blockSize+1);
+                int block = -1;
+                List<Integer> candidates = weaks.get( a | (b<<16) );
+                if ( candidates != null ) {
+                    md.update(w.buffer,offset,blockSize);
+                    byte[] strong = md.digest();
+                    block = select(candidates,strongs,strong,p,blockSize);
+                }
+
+                if ( block != -1 ) {
+                    if ( literal < p ) {
+                        ops.add( new Op(-1,literal,p-literal) );
+                    }
+                    ops.add( new Op(block,p,blockSize) );
+                    p += blockSize;
+                    literal = p;
+                    if ( p+blockSize <= length ) {
+                        offset = w.ensure(p,blockSize);
+                        int weak = weak(w.buffer,offset,blockSize);
+                        a = weak & 0xffff;
+                        b = weak >>> 16;
+                    }
+                }
+                else {
+                    // Roll the checksum by one byte
+                    if ( p+blockSize < length ) {
+                        int out = w.buffer[offset] & 0xff;
+                        int in = w.buffer[offset+blockSize] & 0xff;
+                        a = (a - out + in) & 0xffff;
+                        b = (b - blockSize*out + a) & 0xffff;
+                    }
+                    p++;
+                }
+            }
+
+            if ( literal < length ) {
+                ops.add( new Op(-1,literal,length-literal) );
+            }
+        }
+        finally {
+            w.close();
+        }
+
+        return ops;
+    }
+
+    /**
+     * Return the index of the block whose strong hash matches the specified
+     * one, or -1. The block located at the same offset is preferred, as it
+     * enables in place updates.
+     */
+    private static int select(
+            List<Integer> candidates, List<byte[]> strongs, byte[] strong,
+            long offset, int blockSize ) {
+
+        int found = -1;
+        for (int candidate : candidates) {
+            if ( Arrays.equals(strongs.get(candidate),strong) ) {
+                if ( (long)candidate*blockSize == offset ) {
+                    return candidate;
+                }
+                if ( found == -1 ) {
+                    found = candidate;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Rewrite the literal regions of the destination file in place and
+     * truncate it to the length of the source file.
+     */
+    private static long patch( File src, File dst, List<Op> ops )
+    throws IOException {
+
+        long written = 0;
+        RandomAccessFile in = new RandomAccessFile(src,"r");
+        RandomAccessFile out = new RandomAccessFile(dst,"rw");
+        try {
+            byte[] buffer = new byte[ 64*1024 ];
+            for (Op op : ops) {
+                if ( op.block == -1 ) {
+                    in.seek(op.offset);
+                    out.seek(op.offset);
+                    copy(in,out,op.length,buffer);
+                    written += op.length;
+                }
+            }
+            out.setLength(in.length());
+        }
+        finally {
+            in.close();
+            out.close();
+        }
+        return written;
+    }
+
+    /**
+     * Assemble the new content in a temporary file located in the directory of
+     * the destination file and replace the destination file with it.
+     */
+    private static long rebuild( File src, File dst, List<Op> ops, int blockSize )
+    throws IOException {
+
+        File dir = dst.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile(dst.getName(),".delta",dir);
+        long written = 0;
+
+        try {
+            RandomAccessFile in = new RandomAccessFile(src,"r");
+            RandomAccessFile old = dst.exists() ? new RandomAccessFile(dst,"r") : null;
+            RandomAccessFile out = new RandomAccessFile(tmp,"rw");
+            try {
+                byte[] buffer = new byte[ Math.max(64*1024,blockSize) ];
+                if ( ops.isEmpty() ) {
+                    ops.add( new Op(-1,0,in.length()) );
+                }
+                for (Op op : ops) {
+                    if ( op.block == -1 ) {
+                        in.seek(op.offset);
+                        written += copy(in,out,op.length,buffer);
+                    }
+                    else {
+                        old.seek( (long)op.block*blockSize );
+                        written += copy(old,out,op.length,buffer);
+                    }
+                }
+            }
+            finally {
+                out.close();
+                in.close();
+                if ( old != null )  old.close();
+            }
+
+            try {
+                Files.move(
+                    tmp.toPath(), dst.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING );
+            }
+            catch( AtomicMoveNotSupportedException amnse ) {
+                Files.move(
+                    tmp.toPath(), dst.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING );
+            }
+        }
+        finally {
+            tmp.delete();
+        }
+
+        return written;
+    }
+
+    private static long copy(
+            RandomAccessFile in, RandomAccessFile out, long length,
+            byte[] buffer )
+    throws IOException {
+
+        long remaining = length;
+        while ( remaining > 0 ) {
+            int n = (int) Math.min(buffer.length,remaining);
+            in.readFully(buffer,0,n);
+            out.write(buffer,0,n);
+            remaining -= n;
+        }
+        return length;
+    }
+
+    /**
+     * Return the weak checksum of the specified bytes. The low 16 bits hold the
+     * sum of the bytes and the high 16 bits the sum of the running sums.
+     */
+    private static int weak( byte[] b, int off, int len ) {
+        int a = 0, s = 0;
+        for ( int i=0 ; i < len ; i++ ) {
+            int x = b[off+i] & 0xff;
+            a += x;
+            s += (len-i) * x;
+        }
+        return (a & 0xffff) | ((s & 0xffff) << 16);
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        }
+        catch( NoSuchAlgorithmException nsae ) {
+            // MD5 is supported by all Java platforms
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    /**
+     * A window over a file which is read sequentially with a buffer.
+     */
+    private static class Window {
+
+        final RandomAccessFile raf;
+        final long length;
+        final byte[] buffer;
+
+        /** The position in the file of the first byte of the buffer. */
+        long start;
+        int filled;
+
+        Window( File file, int size ) throws IOException {
+            raf = new RandomAccessFile(file,"r");
+            length = raf.length();
+            buffer = new byte[size];
+        }
+
+        /**
+         * Ensure that the bytes from position p (included) to p+len (excluded,
+         * bounded by the length of the file) are in the buffer.
+         *
+         * @return  the index of position p in the buffer
+         */
+        int ensure( long p, int len ) throws IOException {
+
+            long end = Math.min(p+len,length);
+            if ( p >= start && end <= start+filled ) {
+                return (int) (p-start);
+            }
+
+            // Shift the bytes from p to the beginning of the buffer
+            int keep = (int) Math.max( 0, start+filled-p );
+            if ( keep > 0 ) {
+                System.arraycopy(buffer,(int)(p-start),buffer,0,keep);
+            }
+            start = p;
+            filled = keep;
+
+            // Fill the rest of the buffer
+            raf.seek(start+filled);
+            int toRead = (int) Math.min( buffer.length-filled, length-start-filled );
+            raf.readFully(buffer,filled,toRead);
+            filled += toRead;
+
+            return 0;
+        }
+
+        void close() throws IOException {
+            raf.close();
+        }
+    }
+}
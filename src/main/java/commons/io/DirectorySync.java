@@ -0,0 +1,335 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class mirrors a source directory into a destination directory.
+ *
+ * <p>
+ * Files whose size and last modification time are the same in both
+ * directories are considered to be up to date and are skipped. Other files are
+ * copied, and their last modification time is set to the one of the source
+ * file so that the next synchronization skips them. Optionally, when only the
+ * modification times differ, contents are compared before copying. Files and
+ * directories which do not exist in the source directory can be deleted from
+ * the destination directory. Copies and deletions run concurrently on a
+ * bounded pool of threads.
+ * </p>
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class DirectorySync {
+
+    private int nbThreads;
+    private boolean compareContent;
+    private boolean delete;
+
+    /**
+     * @param nbThreads       the number of threads copying and deleting files
+     * @param compareContent  true if files with the same size but different
+     *                        modification times are compared before copying
+     * @param delete          true if the files and the directories which do
+     *                        not exist in the source directory are deleted from
+     *                        the destination directory
+     */
+    public DirectorySync( int nbThreads, boolean compareContent, boolean delete ) {
+        if ( nbThreads <= 0 )
+            throw new IllegalArgumentException(
+                    "Parameter 1 (nbThreads) should be strictly positive");
+        this.nbThreads = nbThreads;
+        this.compareContent = compareContent;
+        this.delete = delete;
+    }
+
+    /**
+     * Mirror the source directory into the destination directory.
+     *
+     * @param src  the source directory
+     * @param dst  the destination directory, created if it does not exist
+     * @return     the summary of the synchronization
+     */
+    public Summary sync( File src, File dst ) throws IOException {
+
+        if ( ! src.isDirectory() ) {
+            throw new IOException( src + " is not a directory." );
+        }
+        if ( ! dst.exists() && ! dst.mkdirs() ) {
+            throw new IOException( "Can not create " + dst );
+        }
+
+        final Map<String,BasicFileAttributes> srcs = list(src);
+        Map<String,BasicFileAttributes> dsts = list(dst);
+        final Summary summary = new Summary();
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        /*
+         * Delete the destination entries which are a file in the source
+         * directory and a directory in the destination one, or conversely.
+         */
+        boolean conflicts = false;
+        for ( Map.Entry<String,BasicFileAttributes> entry : srcs.entrySet() ) {
+            String name = entry.getKey();
+            BasicFileAttributes other = dsts.get(name);
+            if ( other!=null && other.isDirectory()!=entry.getValue().isDirectory() ) {
+                File f = new File(dst,name);
+                if ( f.exists() ) {
+                    deleteTree(f);
+                    (other.isDirectory() ?
+                        summary.directoriesDeleted : summary.filesDeleted).
+                    incrementAndGet();
+                }
+                conflicts = true;
+            }
+        }
+        if (conflicts) {
+            dsts = list(dst);
+        }
+
+        // Directories first, so that files can be copied concurrently
+        for ( Map.Entry<String,BasicFileAttributes> entry : srcs.entrySet() ) {
+            String name = entry.getKey();
+            if ( entry.getValue().isDirectory() && !dsts.containsKey(name) ) {
+                new File(dst,name).mkdirs();
+            }
+        }
+
+        for ( Map.Entry<String,BasicFileAttributes> entry : srcs.entrySet() ) {
+            final String name = entry.getKey();
+            final BasicFileAttributes attrs = entry.getValue();
+            final BasicFileAttributes other = dsts.get(name);
+            if ( attrs.isDirectory() ) {
+                continue;
+            }
+            tasks.add( new Callable<Void>() {
+                public Void call() throws IOException {
+                    sync(
+                        new File(src,name),attrs,
+                        new File(dst,name),other,summary );
+                    return null;
+                }
+            });
+        }
+
+        List<String> extraneous = new ArrayList<>();
+        if (delete) {
+            for ( Map.Entry<String,BasicFileAttributes> entry : dsts.entrySet() ) {
+                String name = entry.getKey();
+                if ( ! srcs.containsKey(name) ) {
+                    extraneous.add(name);
+                }
+            }
+            for (final String name : extraneous) {
+                if ( dsts.get(name).isDirectory() ) {
+                    continue;
+                }
+                tasks.add( new Callable<Void>() {
+                    public Void call() throws IOException {
+                        Files.delete( new File(dst,name).toPath() );
+                        summary.filesDeleted.incrementAndGet();
+                        return null;
+                    }
+                });
+            }
+        }
+
+        run(tasks);
+
+        /*
+         * Delete extraneous directories once their files have been deleted.
+         * Reverse order lists subdirectories before their parents.
+         */
+        Collections.reverse(extraneous);
+        for (String name : extraneous) {
+            File dir = new File(dst,name);
+            if ( dsts.get(name).isDirectory() ) {
+                deleteTree(dir);
+                summary.directoriesDeleted.incrementAndGet();
+            }
+        }
+
+        return summary;
+    }
+
+    /**
+     * The result of a synchronization.
+     */
+    public static class Summary {
+
+        private AtomicLong filesCopied = new AtomicLong();
+        private AtomicLong bytesCopied = new AtomicLong();
+        private AtomicLong filesSkipped = new AtomicLong();
+        private AtomicLong filesDeleted = new AtomicLong();
+        private AtomicLong directoriesDeleted = new AtomicLong();
+
+        public long getFilesCopied() { return filesCopied.get(); }
+        public long getBytesCopied() { return bytesCopied.get(); }
+        public long getFilesSkipped() { return filesSkipped.get(); }
+        public long getFilesDeleted() { return filesDeleted.get(); }
+        public long getDirectoriesDeleted() { return directoriesDeleted.get(); }
+
+        @Override
+        public String toString() {
+            return
+                getFilesCopied()+" files copied ("+getBytesCopied()+" bytes), "+
+                getFilesSkipped()+" skipped, "+getFilesDeleted()+" deleted, "+
+                getDirectoriesDeleted()+" directories deleted";
+        }
+    }
+
+
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+
+    /**
+     * Synchronize a file.
+     *
+     * @param other  the attributes of the destination file or null if the file
+     *               does not exist
+     */
+    private void sync(
+            File src, BasicFileAttributes attrs,
+            File dst, BasicFileAttributes other, Summary summary )
+    throws IOException {
+
+        long mtime = attrs.lastModifiedTime().toMillis();
+
+        if ( other!=null && other.size()==attrs.size() ) {
+            if ( other.lastModifiedTime().toMillis() == mtime ) {
+                summary.filesSkipped.incrementAndGet();
+                return;
+            }
+            if ( compareContent && new FileExt(src).compareContent(dst) ) {
+                dst.setLastModified(mtime);
+                summary.filesSkipped.incrementAndGet();
+                return;
+            }
+        }
+
+        new FileExt(src).copyFile(dst);
+        dst.setLastModified(mtime);
+        summary.filesCopied.incrementAndGet();
+        summary.bytesCopied.addAndGet(attrs.size());
+    }
+
+    /**
+     * Run the specified tasks on a pool of threads and wait for them.
+     *
+     * @throws IOException  the first error raised by a task
+     */
+    private void run( List<Callable<Void>> tasks ) throws IOException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        try {
+            List<Future<Void>> futures = executor.invokeAll(tasks);
+            IOException error = null;
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                }
+                catch( ExecutionException ee ) {
+                    Throwable cause = ee.getCause();
+                    IOException ioe =
+                        cause instanceof IOException ?
+                        (IOException) cause : new IOException(cause);
+                    if ( error == null )  error = ioe;
+                    else  error.addSuppressed(ioe);
+                }
+            }
+            if ( error != null ) {
+                throw error;
+            }
+        }
+        catch( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Return the attributes of the files and directories contained in the
+     * specified directory, indexed by their path relative to the directory.
+     * Paths use / as a separator and are sorted, so that a directory is listed
+     * before its content.
+     */
+    private static Map<String,BasicFileAttributes> list( File dir )
+    throws IOException {
+
+        final Path root = dir.toPath();
+        final Map<String,BasicFileAttributes> entries = new TreeMap<>();
+        Files.walkFileTree( root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(
+                    Path d, BasicFileAttributes attrs ) {
+                if ( ! d.equals(root) ) {
+                    entries.put(relative(root,d),attrs);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+            @Override
+            public FileVisitResult visitFile( Path f, BasicFileAttributes attrs ) {
+                entries.put(relative(root,f),attrs);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return entries;
+    }
+
+    private static String relative( Path root, Path p ) {
+        return root.relativize(p).toString().replace(File.separatorChar,'/');
+    }
+
+    private static void deleteTree( File file ) throws IOException {
+        File[] files = file.listFiles();
+        if ( files != null ) {
+            for (File f : files) {
+                deleteTree(f);
+            }
+        }
+        Files.delete(file.toPath());
+    }
+}
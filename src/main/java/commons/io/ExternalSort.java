@@ -0,0 +1,474 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class sorts the lines of a stream which may not fit in memory.
+ *
+ * <p>
+ * Lines are read with {@link InputStreamLiner} into runs whose estimated size
+ * is bounded by a memory budget. Runs are sorted concurrently and spilled to
+ * temporary files. The sorted runs are then merged with a heap over buffered
+ * readers. When the input fits in a single run, no temporary file is used.
+ * Optionally, lines which are equal according to the comparator are written
+ * once.
+ * </p>
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class ExternalSort {
+
+    final public static long DEFAULT_MEMORY_BUDGET = 64*1024*1024;
+
+    /** The maximum number of runs merged at once. */
+    final private static int MAX_FAN_IN = 128;
+
+    /** The size of the buffers of the streams reading and writing runs. */
+    final private static int BUFFER_SIZE = 64*1024;
+
+    private int fileType;
+    private long memoryBudget;
+    private Comparator<String> comparator;
+    private boolean unique;
+    private int nbThreads;
+    private File tmpDir;
+
+    /**
+     * @param fileType  enumerated value: either {@link InputStreamLiner#UNIX},
+     *                  or {@link InputStreamLiner#WIN}, or {@link
+     *                  InputStreamLiner#MAC}
+     */
+    public ExternalSort( int fileType ) {
+        this(
+            fileType, DEFAULT_MEMORY_BUDGET, null, false,
+            Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * @param fileType      enumerated value: either {@link
+     *                      InputStreamLiner#UNIX}, or {@link
+     *                      InputStreamLiner#WIN}, or {@link
+     *                      InputStreamLiner#MAC}
+     * @param memoryBudget  the number of bytes which can be used by the lines
+     *                      held in memory
+     * @param comparator    the comparator of lines or null for the natural
+     *                      order of strings
+     * @param unique        true if equal lines are written once
+     * @param nbThreads     the number of threads sorting runs
+     */
+    public ExternalSort(
+            int fileType, long memoryBudget, Comparator<String> comparator,
+            boolean unique, int nbThreads ) {
+
+        if ( fileType!=InputStreamLiner.UNIX &&
+             fileType!=InputStreamLiner.WIN &&
+             fileType!=InputStreamLiner.MAC ) {
+            throw new IllegalArgumentException("Illegal value: "+fileType);
+        }
+        if ( memoryBudget <= 0 )
+            throw new IllegalArgumentException(
+                    "Parameter 2 (memoryBudget) should be strictly positive");
+        if ( nbThreads <= 0 )
+            throw new IllegalArgumentException(
+                    "Parameter 5 (nbThreads) should be strictly positive");
+
+        this.fileType = fileType;
+        this.memoryBudget = memoryBudget;
+        this.comparator =
+            comparator==null ? Comparator.<String>naturalOrder() : comparator;
+        this.unique = unique;
+        this.nbThreads = nbThreads;
+    }
+
+    /**
+     * Set the directory where runs are spilled. The default temporary
+     * directory is used if dir is null.
+     */
+    public void setTempDirectory( File dir ) {
+        tmpDir = dir;
+    }
+
+    /**
+     * Sort the lines of the specified file.
+     *
+     * @param src  the file to sort
+     * @param dst  the file where sorted lines are written
+     * @return     the number of lines written
+     */
+    public long sort( File src, File dst ) throws IOException {
+        InputStream is = new FileInputStream(src);
+        try {
+            OutputStream os = new FileOutputStream(dst);
+            try {
+                return sort(is,os);
+            }
+            finally {
+                os.close();
+            }
+        }
+        finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Sort the lines of the specified stream. The streams are not closed.
+     *
+     * @param is  the stream to sort
+     * @param os  the stream where sorted lines are written
+     * @return    the number of lines written
+     */
+    public long sort( InputStream is, OutputStream os ) throws IOException {
+
+        /*
+         * A run is being filled while the previous ones are sorted. The budget
+         * is shared between the run being filled and the ones being sorted.
+         */
+        long runBudget = Math.max( 1, memoryBudget/(nbThreads+1) );
+
+        InputStreamLiner isl =
+            new InputStreamLiner( new BufferedInputStream(is,BUFFER_SIZE) );
+        ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+        Deque<Future<File>> pending = new ArrayDeque<>();
+        List<File> runs = new ArrayList<>();
+
+        try {
+            List<String> lines = new ArrayList<>();
+            long size = 0;
+            String line;
+            while ( (line=isl.readLine(fileType)) != null ) {
+                lines.add(line);
+                size += estimate(line);
+                if ( size >= runBudget ) {
+                    if ( pending.size() >= nbThreads ) {
+                        runs.add( get(pending.removeFirst()) );
+                    }
+                    pending.addLast( executor.submit(spill(lines)) );
+                    lines = new ArrayList<>();
+                    size = 0;
+                }
+            }
+
+            if ( pending.isEmpty() && runs.isEmpty() ) {
+                // Everything fits in memory
+                lines.sort(comparator);
+                LineWriter writer = new LineWriter(os);
+                for (String l : lines) {
+                    writer.write(l);
+                }
+                writer.flush();
+                return writer.count;
+            }
+
+            if ( ! lines.isEmpty() ) {
+                pending.addLast( executor.submit(spill(lines)) );
+            }
+            while ( ! pending.isEmpty() ) {
+                runs.add( get(pending.removeFirst()) );
+            }
+
+            /*
+             * Merge in several passes if there are too many runs. The runs of
+             * the current pass are deleted by the enclosing finally block and
+             * the files merged so far are deleted if the pass fails.
+             */
+            while ( runs.size() > MAX_FAN_IN ) {
+                List<File> merged = new ArrayList<>();
+                boolean done = false;
+                try {
+                    for ( int i=0 ; i < runs.size() ; i+=MAX_FAN_IN ) {
+                        List<File> group =
+                            runs.subList(i,Math.min(i+MAX_FAN_IN,runs.size()));
+                        File tmp = createTempFile();
+                        merged.add(tmp);
+                        DataOutputStream dos = openRun(tmp);
+                        try {
+                            merge( group, new RunWriter(dos) );
+                        }
+                        finally {
+                            dos.close();
+                        }
+                        delete(group);
+                    }
+                    done = true;
+                }
+                finally {
+                    if ( ! done ) {
+                        delete(merged);
+                    }
+                }
+                runs = merged;
+            }
+
+            LineWriter writer = new LineWriter(os);
+            merge(runs,writer);
+            writer.flush();
+            return writer.count;
+        }
+        finally {
+            executor.shutdownNow();
+            for (Future<File> future : pending) {
+                // Runs being spilled when cancelled are deleted on exit
+                if ( ! future.cancel(true) ) {
+                    try {
+                        runs.add(future.get());
+                    }
+                    catch( InterruptedException | ExecutionException e ) {}
+                }
+            }
+            delete(runs);
+        }
+    }
+
+
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+
+    /**
+     * Return the estimated number of bytes used in memory by a line: the
+     * characters, the headers of the string and of its array, and the
+     * reference held by the run.
+     */
+    private static long estimate( String line ) {
+        return 2L*line.length() + 56;
+    }
+
+    /** Return a task which sorts the specified lines and spills them. */
+    private Callable<File> spill( final List<String> lines ) {
+        return new Callable<File>() {
+            public File call() throws IOException {
+                lines.sort(comparator);
+                File tmp = createTempFile();
+                DataOutputStream dos = openRun(tmp);
+                try {
+                    RunWriter writer = new RunWriter(dos);
+                    for (String line : lines) {
+                        writer.write(line);
+                    }
+                }
+                catch( IOException ioe ) {
+                    dos.close();
+                    tmp.delete();
+                    throw ioe;
+                }
+                dos.close();
+                return tmp;
+            }
+        };
+    }
+
+    private File createTempFile() throws IOException {
+        File tmp = File.createTempFile("sort",".run",tmpDir);
+        tmp.deleteOnExit();
+        return tmp;
+    }
+
+    private static DataOutputStream openRun( File file ) throws IOException {
+        return new DataOutputStream(
+            new BufferedOutputStream( new FileOutputStream(file), BUFFER_SIZE ));
+    }
+
+    private static File get( Future<File> future ) throws IOException {
+        try {
+            return future.get();
+        }
+        catch( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch( ExecutionException ee ) {
+            Throwable cause = ee.getCause();
+            if ( cause instanceof IOException )  throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private static void delete( List<File> files ) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Merge the specified sorted runs with a heap ordered by the current line
+     * of each run. Ties are broken with the index of the runs so that the sort
+     * is stable.
+     */
+    private void merge( List<File> runs, Sink sink ) throws IOException {
+
+        PriorityQueue<RunReader> heap =
+            new PriorityQueue<>( Math.max(1,runs.size()), new Comparator<RunReader>() {
+                public int compare( RunReader r1, RunReader r2 ) {
+                    int c = comparator.compare(r1.line,r2.line);
+                    return c!=0 ? c : Integer.compare(r1.index,r2.index);
+                }
+            });
+
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (File run : runs) {
+                RunReader reader = new RunReader(run,readers.size());
+                readers.add(reader);
+                if ( reader.next() ) {
+                    heap.add(reader);
+                }
+            }
+            while ( ! heap.isEmpty() ) {
+                RunReader reader = heap.poll();
+                sink.write(reader.line);
+                if ( reader.next() ) {
+                    heap.add(reader);
+                }
+            }
+        }
+        finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Destination of sorted lines. Lines equal to the previous one are
+     * discarded when duplicates are removed.
+     */
+    private abstract class Sink {
+
+        private String last;
+        long count;
+
+        void write( String line ) throws IOException {
+            if ( unique && last!=null && comparator.compare(last,line)==0 ) {
+                return;
+            }
+            last = line;
+            count++;
+            doWrite(line);
+        }
+
+        abstract void doWrite( String line ) throws IOException;
+    }
+
+    /** Write lines followed by the separator of the file type. */
+    private class LineWriter extends Sink {
+
+        private OutputStream os;
+        private byte[] separator;
+
+        LineWriter( OutputStream os ) {
+            this.os = new BufferedOutputStream(os,BUFFER_SIZE);
+            separator =
+                fileType==InputStreamLiner.UNIX ? new byte[]{0x0A} :
+                fileType==InputStreamLiner.MAC ? new byte[]{0x0D} :
+                new byte[]{0x0D,0x0A};
+        }
+
+        void doWrite( String line ) throws IOException {
+            os.write(line.getBytes());
+            os.write(separator);
+        }
+
+        void flush() throws IOException {
+            os.flush();
+        }
+    }
+
+    /**
+     * Write lines to a run. Lines are prefixed with their length, since in
+     * WIN and MAC modes, lines may contain 0x0A bytes.
+     */
+    private class RunWriter extends Sink {
+
+        private DataOutputStream dos;
+
+        RunWriter( DataOutputStream dos ) {
+            this.dos = dos;
+        }
+
+        void doWrite( String line ) throws IOException {
+            byte[] b = line.getBytes();
+            dos.writeInt(b.length);
+            dos.write(b);
+        }
+    }
+
+    /** Read the lines of a run. */
+    private static class RunReader {
+
+        final int index;
+        private DataInputStream dis;
+        String line;
+
+        RunReader( File file, int index ) throws IOException {
+            this.index = index;
+            dis = new DataInputStream(
+                new BufferedInputStream( new FileInputStream(file), BUFFER_SIZE ));
+        }
+
+        /** Read the next line. Return false at the end of the run. */
+        boolean next() throws IOException {
+            int length;
+            try {
+                length = dis.readInt();
+            }
+            catch( EOFException eofe ) {
+                line = null;
+                return false;
+            }
+            byte[] b = new byte[length];
+            dis.readFully(b);
+            line = new String(b);
+            return true;
+        }
+
+        void close() throws IOException {
+            dis.close();
+        }
+    }
+}
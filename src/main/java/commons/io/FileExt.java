@@ -31,9 +31,11 @@ import java.io.FileFilter;
 import java.io.FileReader;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.zip.Checksum;
 
 import commons.lang.StringHelper;
 
@@ -113,13 +115,32 @@ public class FileExt extends File {
      * @return     the copied file
      */
     public File copyFile( File dst ) throws IOException {
+        return copyFile(dst,null,null,null);
+    }
+
+    /**
+     * Perform a file copy. The specified checksum and message digest, if not
+     * null, are updated with the copied bytes. They are computed over the
+     * buffers moved from the source to the destination and thus hold for both
+     * files. The transfer rate is limited by the specified token bucket, if
+     * not null.
+     *
+     * @param dst       the destination file or directory
+     * @param checksum  the checksum to update or null
+     * @param md        the message digest to update or null
+     * @param bucket    the token bucket limiting the transfer rate or null
+     * @return          the copied file
+     */
+    public File copyFile(
+        File dst, Checksum checksum, MessageDigest md, TokenBucket bucket )
+    throws IOException {
 
         File dstFile = dst.isDirectory() ? new File(dst,getName()) : dst;
         FileInputStream fin = new FileInputStream(this);
         FileOutputStream fout = new FileOutputStream(dstFile);
 
-        for ( int b=fin.read() ; b != -1 ; b=fin.read() )
-            fout.write(b);
+        byte[] buffer = new byte[ COPY_BUFFER_SIZE ];
+        PipedStreams.dump(fin,fout,buffer,checksum,md,bucket);
 
         fout.close();
         fin.close();
@@ -127,6 +148,24 @@ public class FileExt extends File {
         return dstFile;
     }
 
+    /**
+     * Update a destination file with the content of the current file by only
+     * writing the regions which differ. The rsync algorithm is used to locate
+     * the blocks of the destination file which are also found in the current
+     * file.
+     *
+     * @param dst  the destination file or directory
+     * @return     the number of bytes written to the destination file
+     * @see DeltaCopy
+     */
+    public long deltaCopyFile( File dst ) throws IOException {
+        File dstFile = dst.isDirectory() ? new File(dst,getName()) : dst;
+        return DeltaCopy.update(this,dstFile,DeltaCopy.DEFAULT_BLOCK_SIZE);
+    }
+
+    /** The size of the buffer used to copy files. */
+    final private static int COPY_BUFFER_SIZE = 64*1024;
+
     /**
      * Get the content of a file in a single byte array.
      *
@@ -149,6 +188,9 @@ public class FileExt extends File {
     /**
      * Given a file name and a directory, compute an unique file name.
      * If the given file name already exists, append it with a numbered suffix.
+     * Each candidate name is probed in turn and the returned name may be taken
+     * by another thread before being used. See {@link
+     * #createUniqueFile(String, String)} for an atomic alternative.
      *
      * @param dirName   the directory name
      * @param fileName  the original file name
@@ -181,6 +223,24 @@ public class FileExt extends File {
         return newFileName;
     }
 
+    /**
+     * Given a file name and a directory, atomically create an empty file with
+     * an unique name. If the given file name already exists, it is appended
+     * with a numbered suffix. Concurrent callers never obtain the same file.
+     *
+     * @param dirName   the directory name
+     * @param fileName  the original file name
+     * @return          the created file
+     * @see UniqueFileNameAllocator
+     */
+    public static File createUniqueFile( String dirName, String fileName )
+    throws IOException {
+        return allocator.allocate( new File(dirName), fileName );
+    }
+
+    final static private UniqueFileNameAllocator allocator =
+        new UniqueFileNameAllocator();
+
     /**
      * Return the directory contains in the current directory.
      *
@@ -205,6 +265,18 @@ public class FileExt extends File {
      * @param dst  the destination directory
      */
     public void moveFiles( File dst ) throws java.io.IOException {
+        moveFiles(dst,null);
+    }
+
+    /**
+     * Move all the files of the current directory. The transfer rate is
+     * limited by the specified token bucket.
+     *
+     * @param dst     the destination directory
+     * @param bucket  the token bucket limiting the transfer rate or null
+     */
+    public void moveFiles( File dst, TokenBucket bucket )
+    throws java.io.IOException {
 
         if ( ! dst.isDirectory() ) {
             throw new IOException( dst + " is not a directory." );
@@ -219,7 +291,7 @@ public class FileExt extends File {
          * all files have been copied.
          */
         for ( int i=0 ; i < files.length ; i++ ) {
-            ((FileExt)files[i]).copyFile(dst);
+            new FileExt(files[i]).copyFile(dst,null,null,bucket);
         }
 
         // Delete files
@@ -26,6 +26,8 @@ package commons.io;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * This class filters an output stream by replacing a given pattern of bytes
@@ -41,6 +43,17 @@ import java.io.OutputStream;
  * </ul>
  * </p>
  *
+ * <p>
+ * The matching state of the filter can be exported with {@link #getState()}
+ * and imported with {@link #setState(State)}, for example to resume the
+ * filtering of a large file from a checkpoint. The state records the number of
+ * bytes written to the filter and the number of bytes written to the filtered
+ * stream. To take a checkpoint, flush the filter, then save its state. To
+ * resume, truncate the output at {@link State#getOutputOffset()}, create a
+ * filter with the same parameters, import the state, and write the input
+ * starting at {@link State#getBytesIn()}.
+ * </p>
+ *
  * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
  */
 public class FindAndReplaceOutputStream extends FilterOutputStream {
@@ -54,6 +67,12 @@ public class FindAndReplaceOutputStream extends FilterOutputStream {
      */
     private int index;
 
+    /** The number of bytes written to this filter. */
+    private long bytesIn;
+
+    /** The number of bytes written to the filtered stream. */
+    private long bytesOut;
+
     public FindAndReplaceOutputStream(
             OutputStream os, byte[] find, byte[] replace ) {
         
@@ -129,7 +148,7 @@ public class FindAndReplaceOutputStream extends FilterOutputStream {
             // find has been found
             // Write replace
             for ( int i=0 ; i < replace.length ; i++ ) {
-                super.write(replace[i]);
+                emit(replace[i]);
             }
         }
     }
@@ -147,12 +166,14 @@ public class FindAndReplaceOutputStream extends FilterOutputStream {
      */
     public boolean writeAndFind( int b ) throws IOException {
 
+        bytesIn++;
+
         if ( find.length == 0 ) {
             // Nothing is to be found.
             // This is rather dumb, but we return false,
             // unless true should be more "logical"
             // (nothing to find is always found).
-            super.write(b);
+            emit(b);
             return false;
         }
 
@@ -183,7 +204,7 @@ public class FindAndReplaceOutputStream extends FilterOutputStream {
                  * whereas it should have succeeded.
                  */
                 for ( int i=0 ; i < index ; i++ ) {
-                    super.write(find[i]);
+                    emit(find[i]);
                 }
                 index = 0;
             }
@@ -197,10 +218,100 @@ public class FindAndReplaceOutputStream extends FilterOutputStream {
                 index = 1;
             }
             else {
-                super.write(b);
+                emit(b);
             }
         }
 
         return false;
     }
+
+    /**
+     * Return the matching state of this filter. If this filter is part of a
+     * chain constructed by {@link #create(OutputStream, String[], String[])},
+     * the state includes the ones of the next elements of the chain.
+     */
+    public State getState() {
+        State state = new State();
+        state.find = find;
+        state.index = index;
+        state.bytesIn = bytesIn;
+        state.bytesOut = bytesOut;
+        if ( out instanceof FindAndReplaceOutputStream ) {
+            state.next = ((FindAndReplaceOutputStream)out).getState();
+        }
+        return state;
+    }
+
+    /**
+     * Import a matching state previously returned by {@link #getState()} on a
+     * filter constructed with the same parameters.
+     *
+     * @throws IllegalArgumentException
+     *      if the state has been exported by a filter searching for another
+     *      pattern or by a different chain of filters
+     */
+    public void setState( State state ) throws IllegalArgumentException {
+
+        if ( ! Arrays.equals(find,state.find) ) {
+            throw new IllegalArgumentException(
+                    "The state has been exported by a filter searching for "+
+                    "another pattern");
+        }
+        boolean chained = out instanceof FindAndReplaceOutputStream;
+        if ( chained != (state.next!=null) ) {
+            throw new IllegalArgumentException(
+                    "The state has been exported by a different chain of "+
+                    "filters");
+        }
+
+        if (chained) {
+            ((FindAndReplaceOutputStream)out).setState(state.next);
+        }
+        index = state.index;
+        bytesIn = state.bytesIn;
+        bytesOut = state.bytesOut;
+    }
+
+    /**
+     * The matching state of a {@link FindAndReplaceOutputStream}. The bytes
+     * pending for a match are the index first bytes of the pattern.
+     */
+    public static class State implements Serializable {
+
+        private static final long serialVersionUID = 5185226307421731938L;
+
+        private byte[] find;
+        private int index;
+        private long bytesIn;
+        private long bytesOut;
+
+        /** The state of the next filter in the chain or null. */
+        private State next;
+
+        private State() {}
+
+        /** Return the number of bytes written to the filter. */
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        /** Return the number of bytes written by the filter. */
+        public long getBytesOut() {
+            return bytesOut;
+        }
+
+        /**
+         * Return the number of bytes written by the last filter of the chain
+         * to the filtered stream.
+         */
+        public long getOutputOffset() {
+            return next==null ? bytesOut : next.getOutputOffset();
+        }
+    }
+
+    /** Write a byte to the filtered stream. */
+    private void emit( int b ) throws IOException {
+        super.write(b);
+        bytesOut++;
+    }
 }
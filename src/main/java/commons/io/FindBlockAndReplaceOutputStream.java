@@ -27,12 +27,21 @@ import java.io.ByteArrayOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * This class filters an output stream by replacing a block of bytes delimited
  * by two arrays of bytes (begin and end), by a third one (replace).
  * begin and end arrays are also replaced.
  *
+ * <p>
+ * As with {@link FindAndReplaceOutputStream}, the matching state of the filter,
+ * including the bytes of a block whose end has not been found yet, can be
+ * exported with {@link #getState()} and imported with {@link
+ * #setState(State)} to resume the filtering from a checkpoint.
+ * </p>
+ *
  * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
  */
 public class FindBlockAndReplaceOutputStream extends FilterOutputStream {
@@ -56,6 +65,9 @@ public class FindBlockAndReplaceOutputStream extends FilterOutputStream {
      */
     private ByteArrayOutputStream baos;
 
+    /** The number of bytes written to this filter. */
+    private long bytesIn;
+
     public FindBlockAndReplaceOutputStream(
             OutputStream os, byte[] begin, byte[] end, byte[] replace ) {
         
@@ -105,6 +117,7 @@ public class FindBlockAndReplaceOutputStream extends FilterOutputStream {
     // Only call super.write(int).
     @Override
     public void write( int b ) throws IOException {
+        bytesIn++;
         if ( !found ) {
             // begin not found
             // Search for it and dump (begin itself not dumped if found)
@@ -123,4 +136,75 @@ public class FindBlockAndReplaceOutputStream extends FilterOutputStream {
             }
         }
     }
+
+    /**
+     * Return the matching state of this filter.
+     */
+    public State getState() {
+        State state = new State();
+        state.begin = begin;
+        state.end = end;
+        state.found = found;
+        state.block = baos.toByteArray();
+        state.beginState = beginos.getState();
+        state.endState = endos.getState();
+        state.bytesIn = bytesIn;
+        return state;
+    }
+
+    /**
+     * Import a matching state previously returned by {@link #getState()} on a
+     * filter constructed with the same parameters.
+     *
+     * @throws IllegalArgumentException
+     *      if the state has been exported by a filter searching for other
+     *      delimiters
+     */
+    public void setState( State state ) throws IllegalArgumentException {
+
+        if ( ! Arrays.equals(begin,state.begin) ||
+             ! Arrays.equals(end,state.end) ) {
+            throw new IllegalArgumentException(
+                    "The state has been exported by a filter searching for "+
+                    "other delimiters");
+        }
+
+        beginos.setState(state.beginState);
+        endos.setState(state.endState);
+        found = state.found;
+        baos.reset();
+        baos.write(state.block,0,state.block.length);
+        bytesIn = state.bytesIn;
+    }
+
+    /**
+     * The matching state of a {@link FindBlockAndReplaceOutputStream}.
+     */
+    public static class State implements Serializable {
+
+        private static final long serialVersionUID = -3016373946431806422L;
+
+        private byte[] begin;
+        private byte[] end;
+        private boolean found;
+
+        /** The bytes accumulated since begin has been found. */
+        private byte[] block;
+
+        private FindAndReplaceOutputStream.State beginState;
+        private FindAndReplaceOutputStream.State endState;
+        private long bytesIn;
+
+        private State() {}
+
+        /** Return the number of bytes written to the filter. */
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        /** Return the number of bytes written to the filtered stream. */
+        public long getOutputOffset() {
+            return beginState.getOutputOffset();
+        }
+    }
 }
@@ -26,8 +26,7 @@ package commons.io;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * This class provides a readLine() method for InputStreams objects.
@@ -90,7 +89,7 @@ public class InputStreamLiner extends FilterInputStream {
     public String readLineWin() throws IOException {
         
         boolean first = true;
-        buffer.clear();
+        size = 0;
         
         while (true) {
             
@@ -106,11 +105,11 @@ public class InputStreamLiner extends FilterInputStream {
                 b = read();
                 if ( b==-1 || b==0x0A )
                     return bufferContent();
-                buffer.add(Integer.valueOf(0x0D));
-                buffer.add(Integer.valueOf(b));
+                add(0x0D);
+                add(b);
             }
             else
-                buffer.add(Integer.valueOf(b));
+                add(b);
         }
     }
     
@@ -127,9 +126,9 @@ public class InputStreamLiner extends FilterInputStream {
         int b = read();
         if (b==-1)  return null;
         
-        buffer.clear();
+        size = 0;
         while ( b!=-1 && b!=0x0A ) {
-            buffer.add(Integer.valueOf(b));
+            add(b);
             b = read();
         }
         return bufferContent();
@@ -148,30 +147,31 @@ public class InputStreamLiner extends FilterInputStream {
         int b = read();
         if (b==-1)  return null;
         
-        buffer.clear();
+        size = 0;
         while ( b!=-1 && b!=0x0D ) {
-            buffer.add(Integer.valueOf(b));
+            add(b);
             b = read();
         }
         return bufferContent();
     }
 
 
-    /** Buffer used by readLine(). Store Integer objects. */
-    private List<Integer> buffer = new ArrayList<Integer>();
+    /** Buffer used by readLine(). */
+    private byte[] buffer = new byte[128];
+
+    /** Number of bytes stored in the buffer. */
+    private int size;
+
+    /** Append a byte to the buffer. */
+    private void add( int b ) {
+        if ( size == buffer.length ) {
+            buffer = Arrays.copyOf(buffer,size*2);
+        }
+        buffer[size++] = (byte) b;
+    }
 
     /** Return the content of the buffer as a String. */
     private String bufferContent() {
-        
-        Integer[] content = buffer.toArray(integerArray);
-        byte[] b = new byte[content.length];
-        for (int i = 0; i < b.length; i++) {
-            b[i] = content[i].byteValue();
-        }
-        
-        return new String(b);
+        return new String(buffer,0,size);
     }
-    
-    /** Working variable used by bufferContent(). */
-    final static private Integer[] integerArray = new Integer[0];
 }
@@ -0,0 +1,340 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * This class compresses an output stream in the gzip format by deflating
+ * fixed-size blocks of bytes in parallel.
+ *
+ * <p>
+ * Each block is deflated by a task submitted to an executor service. The last
+ * 32KB of the previous block are used as a preset dictionary so that the
+ * compression ratio stays close to the one of a sequential deflater. Each
+ * block but the last one is terminated by a sync flush. Compressed blocks are
+ * written in order and form a single gzip member which can be read by
+ * {@link java.util.zip.GZIPInputStream} or by the standard gunzip tool.
+ * </p>
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class ParallelGZIPOutputStream extends FilterOutputStream {
+
+    /** The default size of the blocks which are deflated in parallel. */
+    final public static int DEFAULT_BLOCK_SIZE = 128*1024;
+
+    /** The size of the deflate window, and thus of the preset dictionary. */
+    final private static int DICTIONARY_SIZE = 32*1024;
+
+    /** The gzip header: magic number, deflate method, no flag, no mtime. */
+    final private static byte[] HEADER =
+        new byte[]{ 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    private ExecutorService executor;
+
+    /** true if the executor has been created by this instance. */
+    private boolean ownExecutor;
+
+    private int level;
+
+    /** The maximum number of blocks being deflated at the same time. */
+    private int maxPending;
+
+    /** The blocks being deflated, in the order they must be written. */
+    private Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    /** The deflaters which are not currently in use by a task. */
+    private Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+
+    /** The block currently being filled and the number of bytes in it. */
+    private byte[] block;
+    private int blockLength;
+
+    /** The previously submitted block used as a dictionary for the next one. */
+    private byte[] previous;
+    private int previousLength;
+
+    private CRC32 crc = new CRC32();
+    private long size;
+    private boolean closed;
+
+    public ParallelGZIPOutputStream( OutputStream os ) throws IOException {
+        this(os,DEFAULT_BLOCK_SIZE,null);
+    }
+
+    public ParallelGZIPOutputStream( OutputStream os, ExecutorService executor )
+    throws IOException {
+        this(os,DEFAULT_BLOCK_SIZE,executor);
+    }
+
+    /**
+     * @param os         the output stream where compressed data are written
+     * @param blockSize  the size of the blocks deflated in parallel
+     * @param executor   the executor service running the deflating tasks or
+     *                   null to create a pool sized after the number of
+     *                   available processors and shut down by
+     *                   {@link #close()}
+     */
+    public ParallelGZIPOutputStream(
+            OutputStream os, int blockSize, ExecutorService executor )
+    throws IOException {
+
+        this(os,blockSize,executor,Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelGZIPOutputStream(
+            OutputStream os, int blockSize, ExecutorService executor,
+            int level )
+    throws IOException {
+
+        super(os);
+
+        if ( blockSize <= 0 )
+            throw new IllegalArgumentException(
+                    "Parameter 2 (blockSize) should be strictly positive");
+
+        int nbThreads = Runtime.getRuntime().availableProcessors();
+        if ( executor == null ) {
+            this.executor = Executors.newFixedThreadPool(nbThreads);
+            ownExecutor = true;
+        }
+        else {
+            this.executor = executor;
+        }
+
+        this.level = level;
+        maxPending = 2 * nbThreads;
+        block = new byte[blockSize];
+
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write( int b ) throws IOException {
+        ensureOpen();
+        block[blockLength++] = (byte) b;
+        crc.update(b);
+        size++;
+        if ( blockLength == block.length ) {
+            submit(false);
+        }
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len ) throws IOException {
+
+        ensureOpen();
+        crc.update(b,off,len);
+        size += len;
+
+        while ( len > 0 ) {
+            int n = Math.min( len, block.length-blockLength );
+            System.arraycopy(b,off,block,blockLength,n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if ( blockLength == block.length ) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * Deflate the bytes written so far, write them to the underlying output
+     * stream and flush it.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if ( blockLength > 0 ) {
+            submit(false);
+        }
+        while ( ! pending.isEmpty() ) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        if (closed)  return;
+
+        try {
+            // The last block, possibly empty, terminates the deflate stream
+            submit(true);
+            while ( ! pending.isEmpty() ) {
+                writeNext();
+            }
+
+            // Trailer: CRC32 and uncompressed size modulo 2^32
+            writeInt( (int) crc.getValue() );
+            writeInt( (int) size );
+            out.flush();
+        }
+        finally {
+            closed = true;
+            if (ownExecutor) {
+                executor.shutdown();
+            }
+            for ( Deflater deflater : deflaters ) {
+                deflater.end();
+            }
+            out.close();
+        }
+    }
+
+
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Submit the current block for deflating and start a new one.
+     *
+     * @param last  true if this is the last block of the stream
+     */
+    private void submit( boolean last ) throws IOException {
+
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] dict = previous;
+        final int dictLength = previousLength;
+
+        Callable<byte[]> task = new Callable<byte[]>() {
+            public byte[] call() {
+                return deflate(data,length,dict,dictLength,last);
+            }
+        };
+        pending.addLast( executor.submit(task) );
+
+        previous = data;
+        previousLength = length;
+        block = new byte[ data.length ];
+        blockLength = 0;
+
+        // Bound the memory used by blocks waiting to be written
+        while ( pending.size() > maxPending ) {
+            writeNext();
+        }
+    }
+
+    /**
+     * Wait for the oldest pending block to be deflated and write it.
+     */
+    private void writeNext() throws IOException {
+        Future<byte[]> future = pending.removeFirst();
+        try {
+            byte[] compressed = future.get();
+            out.write(compressed);
+        }
+        catch( InterruptedException ie ) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch( ExecutionException ee ) {
+            throw new IOException(ee.getCause());
+        }
+    }
+
+    /**
+     * Deflate the specified block. This method is run by the executor service.
+     */
+    private byte[] deflate(
+            byte[] data, int length, byte[] dict, int dictLength, boolean last ) {
+
+        Deflater deflater = deflaters.poll();
+        if ( deflater == null ) {
+            deflater = new Deflater(level,true);
+        }
+
+        try {
+            if ( dictLength > 0 ) {
+                int n = Math.min(dictLength,DICTIONARY_SIZE);
+                deflater.setDictionary(dict,dictLength-n,n);
+            }
+            deflater.setInput(data,0,length);
+
+            ByteArrayOutputStream baos =
+                new ByteArrayOutputStream( length/2 + 64 );
+            byte[] buffer = new byte[ 16*1024 ];
+            int n;
+            if (last) {
+                deflater.finish();
+                while ( ! deflater.finished() ) {
+                    n = deflater.deflate(buffer);
+                    baos.write(buffer,0,n);
+                }
+            }
+            else {
+                /*
+                 * A sync flush ends the block on a byte boundary without
+                 * setting the final bit, so that the next block can be
+                 * appended as is.
+                 */
+                do {
+                    n = deflater.deflate(
+                            buffer,0,buffer.length,Deflater.SYNC_FLUSH);
+                    baos.write(buffer,0,n);
+                } while ( n == buffer.length );
+            }
+
+            return baos.toByteArray();
+        }
+        finally {
+            deflater.reset();
+            deflaters.add(deflater);
+        }
+    }
+
+    /** Write an int in little endian order. */
+    private void writeInt( int i ) throws IOException {
+        out.write( i & 0xff );
+        out.write( (i >> 8) & 0xff );
+        out.write( (i >> 16) & 0xff );
+        out.write( (i >> 24) & 0xff );
+    }
+}
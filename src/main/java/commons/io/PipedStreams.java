@@ -25,7 +25,18 @@ package commons.io;
 
 import java.io.InputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Checksum;
 
 /**
  * This class reads data from input streams (one after the other)
@@ -87,4 +98,250 @@ public class PipedStreams {
         }
         return len;
     }
+
+    /**
+     * Read bytes from an input stream and dump them into an output stream.
+     * The specified checksum (e.g. {@link java.util.zip.CRC32} or {@link
+     * java.util.zip.Adler32}) and message digest, if not null, are updated
+     * with the dumped bytes while they are in the buffer. Since the same bytes
+     * are read and written, they hold for both streams and no other pass over
+     * the data is needed. The transfer rate is limited by the specified token
+     * bucket, if not null. Several transfers sharing the same token bucket
+     * share its bandwidth.
+     *
+     * @param is        the input stream
+     * @param os        the output stream
+     * @param buffer    a buffer to perform the dump
+     * @param checksum  the checksum to update or null
+     * @param md        the message digest to update or null
+     * @param bucket    the token bucket limiting the transfer rate or null
+     * @return          the number of bytes dumped
+     */
+    public static long dump(
+        InputStream is, OutputStream os, byte[] buffer,
+        Checksum checksum, MessageDigest md, TokenBucket bucket )
+    throws IOException {
+
+        int b;
+        long len;
+        for ( len=0 ; (b=is.read(buffer)) != -1 ; len+=b ) {
+            if ( checksum != null )  checksum.update(buffer,0,b);
+            if ( md != null )  md.update(buffer,0,b);
+            if ( bucket != null ) {
+                try {
+                    bucket.acquire(b);
+                }
+                catch( InterruptedException ie ) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            os.write(buffer,0,b);
+        }
+        return len;
+    }
+
+    /**
+     * Asynchronously read bytes from a file and dump them into another file.
+     * The transfer starts at position 0 of both files. The returned future
+     * completes with the number of bytes dumped. Cancelling the future stops
+     * the transfer once the pending read or write completes.
+     *
+     * @param src  the source file channel
+     * @param dst  the destination file channel
+     * @return     the future number of bytes dumped
+     */
+    public static CompletableFuture<Long> dumpAsync(
+        AsynchronousFileChannel src, AsynchronousFileChannel dst ) {
+
+        AsyncDump dump = new AsyncDump(src,null,dst,null);
+        dump.read();
+        return dump;
+    }
+
+    /**
+     * Asynchronously read bytes from a file and dump them into a channel such
+     * as an {@link java.nio.channels.AsynchronousSocketChannel}.
+     *
+     * @param src  the source file channel
+     * @param dst  the destination channel
+     * @return     the future number of bytes dumped
+     * @see #dumpAsync(AsynchronousFileChannel, AsynchronousFileChannel)
+     */
+    public static CompletableFuture<Long> dumpAsync(
+        AsynchronousFileChannel src, AsynchronousByteChannel dst ) {
+
+        AsyncDump dump = new AsyncDump(src,null,null,dst);
+        dump.read();
+        return dump;
+    }
+
+    /**
+     * Asynchronously read bytes from a channel such as an {@link
+     * java.nio.channels.AsynchronousSocketChannel} and dump them into a file.
+     *
+     * @param src  the source channel
+     * @param dst  the destination file channel
+     * @return     the future number of bytes dumped
+     * @see #dumpAsync(AsynchronousFileChannel, AsynchronousFileChannel)
+     */
+    public static CompletableFuture<Long> dumpAsync(
+        AsynchronousByteChannel src, AsynchronousFileChannel dst ) {
+
+        AsyncDump dump = new AsyncDump(null,src,dst,null);
+        dump.read();
+        return dump;
+    }
+
+    /**
+     * Asynchronously read bytes from a channel and dump them into another
+     * channel.
+     *
+     * @param src  the source channel
+     * @param dst  the destination channel
+     * @return     the future number of bytes dumped
+     * @see #dumpAsync(AsynchronousFileChannel, AsynchronousFileChannel)
+     */
+    public static CompletableFuture<Long> dumpAsync(
+        AsynchronousByteChannel src, AsynchronousByteChannel dst ) {
+
+        AsyncDump dump = new AsyncDump(null,src,null,dst);
+        dump.read();
+        return dump;
+    }
+
+    /**
+     * An asynchronous dump driven by completion handlers. Either the file or
+     * the byte channel is set for the source and for the destination. Only one
+     * read or write is pending at any time and no thread is blocked while
+     * waiting for the channels.
+     */
+    private static class AsyncDump extends CompletableFuture<Long> {
+
+        /** The size of the buffers used by asynchronous dumps. */
+        final private static int BUFFER_SIZE = 64*1024;
+
+        /** The maximum number of buffers kept in the pool. */
+        final private static int MAX_POOLED = 256;
+
+        /** The buffers not currently used by an asynchronous dump. */
+        final private static Queue<ByteBuffer> pool =
+            new ConcurrentLinkedQueue<>();
+        final private static AtomicInteger pooled = new AtomicInteger();
+
+        private AsynchronousFileChannel srcFile;
+        private AsynchronousByteChannel srcChannel;
+        private AsynchronousFileChannel dstFile;
+        private AsynchronousByteChannel dstChannel;
+
+        private ByteBuffer buffer;
+        private long readPosition;
+        private long writePosition;
+
+        AsyncDump(
+            AsynchronousFileChannel srcFile, AsynchronousByteChannel srcChannel,
+            AsynchronousFileChannel dstFile, AsynchronousByteChannel dstChannel ) {
+
+            this.srcFile = srcFile;
+            this.srcChannel = srcChannel;
+            this.dstFile = dstFile;
+            this.dstChannel = dstChannel;
+
+            buffer = pool.poll();
+            if ( buffer == null ) {
+                buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            }
+            else {
+                pooled.decrementAndGet();
+            }
+        }
+
+        void read() {
+            if ( isDone() ) {
+                release();
+                return;
+            }
+            try {
+                if ( srcFile != null ) {
+                    srcFile.read(buffer,readPosition,null,readHandler);
+                }
+                else {
+                    srcChannel.read(buffer,null,readHandler);
+                }
+            }
+            catch( RuntimeException re ) {
+                fail(re);
+            }
+        }
+
+        void write() {
+            if ( isDone() ) {
+                release();
+                return;
+            }
+            try {
+                if ( dstFile != null ) {
+                    dstFile.write(buffer,writePosition,null,writeHandler);
+                }
+                else {
+                    dstChannel.write(buffer,null,writeHandler);
+                }
+            }
+            catch( RuntimeException re ) {
+                fail(re);
+            }
+        }
+
+        private CompletionHandler<Integer,Void> readHandler =
+            new CompletionHandler<Integer,Void>() {
+                public void completed( Integer n, Void attachment ) {
+                    if ( n == -1 ) {
+                        complete(writePosition);
+                        release();
+                        return;
+                    }
+                    readPosition += n;
+                    buffer.flip();
+                    write();
+                }
+                public void failed( Throwable exc, Void attachment ) {
+                    fail(exc);
+                }
+            };
+
+        private CompletionHandler<Integer,Void> writeHandler =
+            new CompletionHandler<Integer,Void>() {
+                public void completed( Integer n, Void attachment ) {
+                    writePosition += n;
+                    if ( buffer.hasRemaining() ) {
+                        write();
+                    }
+                    else {
+                        buffer.clear();
+                        read();
+                    }
+                }
+                public void failed( Throwable exc, Void attachment ) {
+                    fail(exc);
+                }
+            };
+
+        private void fail( Throwable exc ) {
+            completeExceptionally(exc);
+            release();
+        }
+
+        /** Return the buffer to the pool. */
+        private void release() {
+            if ( buffer == null )  return;
+            buffer.clear();
+            if ( pooled.incrementAndGet() <= MAX_POOLED ) {
+                pool.add(buffer);
+            }
+            else {
+                pooled.decrementAndGet();
+            }
+            buffer = null;
+        }
+    }
 }
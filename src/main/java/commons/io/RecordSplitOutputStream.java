@@ -0,0 +1,382 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class splits an output stream into records at every occurrence of a
+ * delimiter and dispatches the records to several output streams, the sinks.
+ *
+ * <p>
+ * Each record is written with its trailing delimiter, so that concatenating
+ * the sinks in record order gives back the original stream. The bytes found
+ * after the last delimiter form a last record which is written when the
+ * stream is closed. A {@link Partitioner} chooses the sink of each record and
+ * a {@link SinkFactory} opens sinks on demand. At most a given number of sinks
+ * are open at the same time: the least recently used sink is closed when the
+ * limit is reached and reopened in append mode when needed again.
+ * </p>
+ *
+ * <p>
+ * Unlike {@link SplitOutputStream}, the delimiter is searched with the
+ * Knuth-Morris-Pratt algorithm, which handles delimiters whose prefixes repeat,
+ * and arrays of bytes are scanned in bulk.
+ * </p>
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class RecordSplitOutputStream extends OutputStream {
+
+    /**
+     * Choose the sink of a record.
+     */
+    public interface Partitioner {
+
+        /**
+         * @param index   the index of the record in the stream
+         * @param record  the array containing the record
+         * @param off     the offset of the record in the array
+         * @param len     the length of the record, excluding the delimiter
+         * @return        the identifier of the sink
+         */
+        long partition( long index, byte[] record, int off, int len );
+
+        /**
+         * Return false if this partitioner never returns the same sink
+         * identifier twice. The identifiers of closed sinks then do not need
+         * to be remembered to reopen them in append mode.
+         */
+        default boolean reusesSinks() {
+            return true;
+        }
+    }
+
+    /**
+     * Open the sink associated with an identifier.
+     */
+    public interface SinkFactory {
+
+        /**
+         * @param sink    the identifier of the sink
+         * @param append  true if the sink has already been opened and closed,
+         *                in which case bytes must be appended to the ones
+         *                previously written
+         */
+        OutputStream open( long sink, boolean append ) throws IOException;
+    }
+
+    /** The delimiter and its Knuth-Morris-Pratt failure function. */
+    private byte[] delimiter;
+    private int[] failure;
+
+    /** The number of bytes of the delimiter matched so far. */
+    private int matched;
+
+    /** The current record. */
+    private byte[] record = new byte[1024];
+    private int size;
+
+    /** The buffer reused by {@link #write(int)}. */
+    private byte[] single = new byte[1];
+
+    /** The index of the current record. */
+    private long index;
+
+    private Partitioner partitioner;
+    private SinkFactory factory;
+    private int maxOpenSinks;
+
+    /** The open sinks in least recently used order. */
+    private LinkedHashMap<Long,OutputStream> sinks =
+        new LinkedHashMap<>(16,0.75f,true);
+
+    /**
+     * The sinks which have been closed before the end of the stream. Not
+     * maintained if the partitioner does not reuse sinks.
+     */
+    private Set<Long> closed = new HashSet<>();
+
+    private boolean isClosed;
+
+    /**
+     * @param delimiter     the delimiter of records
+     * @param partitioner   the partitioner choosing the sink of each record
+     * @param factory       the factory opening sinks
+     * @param maxOpenSinks  the maximum number of sinks open at the same time
+     */
+    public RecordSplitOutputStream(
+            byte[] delimiter, Partitioner partitioner, SinkFactory factory,
+            int maxOpenSinks ) {
+
+        if ( delimiter == null )
+            throw new IllegalArgumentException(
+                    "Parameter 1 (delimiter) shouldn't be null");
+        if ( delimiter.length == 0 )
+            throw new IllegalArgumentException(
+                    "Parameter 1 (delimiter) length shouldn't be 0");
+        if ( maxOpenSinks <= 0 )
+            throw new IllegalArgumentException(
+                    "Parameter 4 (maxOpenSinks) should be strictly positive");
+
+        this.delimiter = delimiter;
+        this.partitioner = partitioner;
+        this.factory = factory;
+        this.maxOpenSinks = maxOpenSinks;
+
+        failure = new int[delimiter.length];
+        for ( int i=1, k=0 ; i < delimiter.length ; i++ ) {
+            while ( k>0 && delimiter[i]!=delimiter[k] ) {
+                k = failure[k-1];
+            }
+            if ( delimiter[i] == delimiter[k] ) {
+                k++;
+            }
+            failure[i] = k;
+        }
+    }
+
+    public RecordSplitOutputStream(
+            String delimiter, Partitioner partitioner, SinkFactory factory,
+            int maxOpenSinks ) {
+        this( delimiter.getBytes(), partitioner, factory, maxOpenSinks );
+    }
+
+    /**
+     * Return a partitioner dispatching records in turn to sinks 0 to n-1.
+     */
+    public static Partitioner roundRobin( final int n ) {
+        return new Partitioner() {
+            public long partition( long index, byte[] record, int off, int len ) {
+                return index % n;
+            }
+        };
+    }
+
+    /**
+     * Return a partitioner dispatching records to sinks 0 to n-1 according to
+     * the hash code of their content. Records with the same content are
+     * written to the same sink.
+     */
+    public static Partitioner hash( final int n ) {
+        return new Partitioner() {
+            public long partition( long index, byte[] record, int off, int len ) {
+                int h = 1;
+                for ( int i=off ; i < off+len ; i++ ) {
+                    h = 31*h + record[i];
+                }
+                return (h & 0x7fffffff) % n;
+            }
+        };
+    }
+
+    /**
+     * Return a partitioner writing each record to its own sink.
+     */
+    public static Partitioner perRecord() {
+        return new Partitioner() {
+            public long partition( long index, byte[] record, int off, int len ) {
+                return index;
+            }
+            public boolean reusesSinks() {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return a factory opening the files named prefix+sink+suffix in the
+     * specified directory.
+     */
+    public static SinkFactory files(
+            final File dir, final String prefix, final String suffix ) {
+        return new SinkFactory() {
+            public OutputStream open( long sink, boolean append )
+            throws IOException {
+                File file = new File(dir,prefix+sink+suffix);
+                return new BufferedOutputStream(
+                    new FileOutputStream(file,append) );
+            }
+        };
+    }
+
+    /**
+     * Return the number of records dispatched so far.
+     */
+    public long getRecordCount() {
+        return index;
+    }
+
+    @Override
+    public void write( int b ) throws IOException {
+        single[0] = (byte) b;
+        write( single, 0, 1 );
+    }
+
+    @Override
+    public void write( byte[] b, int off, int len ) throws IOException {
+
+        if ( isClosed ) {
+            throw new IOException("Stream closed");
+        }
+
+        int start = off;
+        int end = off + len;
+        int dlen = delimiter.length;
+        byte first = delimiter[0];
+
+        for ( int i=off ; i < end ; i++ ) {
+            if ( matched == 0 ) {
+                // Fast path: look for the first byte of the delimiter
+                while ( i<end && b[i]!=first ) {
+                    i++;
+                }
+                if ( i == end )  break;
+                matched = 1;
+            }
+            else {
+                while ( matched>0 && b[i]!=delimiter[matched] ) {
+                    matched = failure[matched-1];
+                }
+                if ( b[i] == delimiter[matched] ) {
+                    matched++;
+                }
+            }
+            if ( matched == dlen ) {
+                append(b,start,i+1-start);
+                start = i+1;
+                matched = 0;
+                dispatch(size-dlen);
+            }
+        }
+
+        append(b,start,end-start);
+    }
+
+    /**
+     * Flush the open sinks. The bytes of the current record, which is not
+     * terminated yet, are not written.
+     */
+    @Override
+    public void flush() throws IOException {
+        for (OutputStream os : sinks.values()) {
+            os.flush();
+        }
+    }
+
+    /**
+     * Write the last record, if any, and close the sinks.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if ( isClosed )  return;
+
+        try {
+            if ( size > 0 ) {
+                dispatch(size);
+            }
+        }
+        finally {
+            isClosed = true;
+            IOException error = null;
+            for (OutputStream os : sinks.values()) {
+                try {
+                    os.close();
+                }
+                catch( IOException ioe ) {
+                    if ( error == null )  error = ioe;
+                    else  error.addSuppressed(ioe);
+                }
+            }
+            sinks.clear();
+            if ( error != null ) {
+                throw error;
+            }
+        }
+    }
+
+
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+
+    /** Append bytes to the current record. */
+    private void append( byte[] b, int off, int len ) {
+        if ( size+len > record.length ) {
+            record = Arrays.copyOf( record, Math.max(record.length*2,size+len) );
+        }
+        System.arraycopy(b,off,record,size,len);
+        size += len;
+    }
+
+    /**
+     * Write the current record to its sink.
+     *
+     * @param len  the length of the record excluding the delimiter
+     */
+    private void dispatch( int len ) throws IOException {
+        long id = partitioner.partition(index,record,0,len);
+        sink(id).write(record,0,size);
+        index++;
+        size = 0;
+    }
+
+    /**
+     * Return the sink associated with the specified identifier. Open it and
+     * close the least recently used sink if needed.
+     */
+    private OutputStream sink( long id ) throws IOException {
+
+        OutputStream os = sinks.get(id);
+        if ( os != null ) {
+            return os;
+        }
+
+        if ( sinks.size() >= maxOpenSinks ) {
+            Iterator<Map.Entry<Long,OutputStream>> it =
+                sinks.entrySet().iterator();
+            Map.Entry<Long,OutputStream> eldest = it.next();
+            it.remove();
+            if ( partitioner.reusesSinks() ) {
+                closed.add(eldest.getKey());
+            }
+            eldest.getValue().close();
+        }
+
+        os = factory.open( id, closed.remove(id) );
+        sinks.put(id,os);
+        return os;
+    }
+}
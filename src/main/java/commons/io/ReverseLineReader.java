@@ -0,0 +1,295 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * This class reads the lines of a file starting from the end, as the tail
+ * command does. The file is memory-mapped backwards in windows so that reading
+ * the last lines of a large file does not depend on its size.
+ *
+ * <p>
+ * The line separators are the same as the ones of {@link InputStreamLiner}:
+ * {@link InputStreamLiner#UNIX}, {@link InputStreamLiner#WIN} and {@link
+ * InputStreamLiner#MAC}. Lines are returned in the reverse order of the one
+ * in which {@link InputStreamLiner} returns them.
+ * </p>
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class ReverseLineReader implements Closeable {
+
+    final public static int DEFAULT_WINDOW_SIZE = 1024*1024;
+
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private int fileType;
+    private int windowSize;
+
+    /** The length of the file when it was opened. */
+    private long length;
+
+    /** The end (excluded) of the region which has not been read yet. */
+    private long position;
+
+    /** true until the first line has been read. */
+    private boolean first = true;
+
+    /** false once the first line of the file has been returned. */
+    private boolean more;
+
+    /** The memory-mapped window and the position of its first byte. */
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /**
+     * @param file      the file
+     * @param fileType  enumerated value: either {@link InputStreamLiner#UNIX},
+     *                  or {@link InputStreamLiner#WIN}, or {@link
+     *                  InputStreamLiner#MAC}
+     */
+    public ReverseLineReader( File file, int fileType ) throws IOException {
+        this(file,fileType,DEFAULT_WINDOW_SIZE);
+    }
+
+    public ReverseLineReader( File file, int fileType, int windowSize )
+    throws IOException {
+
+        if ( fileType!=InputStreamLiner.UNIX &&
+             fileType!=InputStreamLiner.WIN &&
+             fileType!=InputStreamLiner.MAC ) {
+            throw new IllegalArgumentException("Illegal value: "+fileType);
+        }
+
+        raf = new RandomAccessFile(file,"r");
+        channel = raf.getChannel();
+        this.fileType = fileType;
+        this.windowSize = windowSize;
+        length = channel.size();
+        position = length;
+        more = length > 0;
+    }
+
+    /**
+     * Return the line preceding the last returned one.
+     *
+     * @return  the line (striped of its separator) or null if the beginning of
+     *          the file has been reached
+     */
+    public String readLine() throws IOException {
+
+        if (first) {
+            first = false;
+            skipTrailingSeparator();
+        }
+        if ( ! more ) {
+            return null;
+        }
+
+        // Search for the separator which precedes the line
+        long end = position;
+        for ( long p=position-1 ; p >= 0 ; p-- ) {
+            int sep = separatorLength(p);
+            if ( sep > 0 ) {
+                position = p+1-sep;
+                return read(p+1,end);
+            }
+        }
+
+        // First line of the file
+        more = false;
+        position = 0;
+        return read(0,end);
+    }
+
+    /**
+     * Return the last lines of the file in the order in which they appear in
+     * the file.
+     *
+     * @param n  the maximum number of lines
+     */
+    public List<String> tail( int n ) throws IOException {
+        List<String> lines = new ArrayList<>(n);
+        String line;
+        while ( lines.size()<n && (line=readLine())!=null ) {
+            lines.add(line);
+        }
+        Collections.reverse(lines);
+        return lines;
+    }
+
+    /**
+     * Watch the file for bytes appended after the length it had when it was
+     * opened and hand each complete line to the specified consumer. If the
+     * file is truncated, lines are read again from the beginning of the file.
+     * This method never returns normally: it ends by throwing an {@link
+     * InterruptedException} when the current thread is interrupted.
+     *
+     * @param consumer    the consumer of lines
+     * @param pollMillis  the delay between two checks of the file size
+     * @throws InterruptedException  when the current thread is interrupted
+     */
+    public void follow( Consumer<String> consumer, long pollMillis )
+    throws IOException, InterruptedException {
+
+        long offset = length;
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(64*1024);
+
+        while (true) {
+
+            long size = channel.size();
+            if ( size < offset ) {
+                offset = 0;
+                pending.reset();
+            }
+
+            while ( offset < size ) {
+                buffer.clear();
+                int n = channel.read(buffer,offset);
+                if ( n <= 0 )  break;
+                pending.write(buffer.array(),0,n);
+                offset += n;
+            }
+
+            if ( pending.size() > 0 ) {
+                byte[] b = pending.toByteArray();
+                pending.reset();
+                int start = 0;
+                for ( int i=0 ; i < b.length ; i++ ) {
+                    int sep = separatorLength(b,i);
+                    if ( sep > 0 ) {
+                        consumer.accept( new String(b,start,i+1-sep-start) );
+                        start = i+1;
+                    }
+                }
+                pending.write(b,start,b.length-start);
+            }
+
+            Thread.sleep(pollMillis);
+        }
+    }
+
+    public void close() throws IOException {
+        window = null;
+        raf.close();
+    }
+
+
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+
+    /**
+     * A separator located at the end of the file does not introduce an empty
+     * line.
+     */
+    private void skipTrailingSeparator() throws IOException {
+        if ( position == 0 ) {
+            return;
+        }
+        int sep = separatorLength(position-1);
+        if ( sep == 0 && fileType==InputStreamLiner.WIN &&
+             byteAt(position-1)==0x0D ) {
+            // InputStreamLiner also strips a trailing 0x0D in WIN mode
+            sep = 1;
+        }
+        position -= sep;
+    }
+
+    /**
+     * Return the length of the separator ending at the specified position or
+     * 0 if there is no separator.
+     */
+    private int separatorLength( long p ) throws IOException {
+        int b = byteAt(p);
+        switch(fileType) {
+            case InputStreamLiner.UNIX :
+                return b==0x0A ? 1 : 0;
+            case InputStreamLiner.MAC :
+                return b==0x0D ? 1 : 0;
+            default :
+                return b==0x0A && p>0 && byteAt(p-1)==0x0D ? 2 : 0;
+        }
+    }
+
+    /** Same as {@link #separatorLength(long)} for an array of bytes. */
+    private int separatorLength( byte[] b, int i ) {
+        switch(fileType) {
+            case InputStreamLiner.UNIX :
+                return b[i]==0x0A ? 1 : 0;
+            case InputStreamLiner.MAC :
+                return b[i]==0x0D ? 1 : 0;
+            default :
+                return b[i]==0x0A && i>0 && b[i-1]==0x0D ? 2 : 0;
+        }
+    }
+
+    /**
+     * Return the byte at the specified position. Map a new window ending at
+     * this position if it is not in the current window.
+     */
+    private int byteAt( long p ) throws IOException {
+        if ( window==null || p<windowStart || p>=windowStart+window.limit() ) {
+            windowStart = Math.max( 0, p+1-windowSize );
+            long size = Math.min( windowSize, length-windowStart );
+            window = channel.map(FileChannel.MapMode.READ_ONLY,windowStart,size);
+        }
+        return window.get( (int) (p-windowStart) ) & 0xff;
+    }
+
+    /** Return the bytes from start (included) to end (excluded). */
+    private String read( long start, long end ) throws IOException {
+
+        byte[] b = new byte[ (int) (end-start) ];
+        if ( window!=null &&
+             start>=windowStart && end<=windowStart+window.limit() ) {
+            ByteBuffer bb = window.duplicate();
+            bb.position( (int) (start-windowStart) );
+            bb.get(b);
+        }
+        else {
+            ByteBuffer bb = ByteBuffer.wrap(b);
+            long p = start;
+            while ( bb.hasRemaining() ) {
+                int n = channel.read(bb,p);
+                if ( n < 0 )  break;
+                p += n;
+            }
+        }
+        return new String(b);
+    }
+}
@@ -0,0 +1,147 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+/**
+ * This class limits the bandwidth used by transfers with the token bucket
+ * algorithm. Tokens, one per byte, are added to the bucket at a given rate,
+ * up to a maximum number of tokens (the burst). Transferring bytes consumes
+ * tokens and waits when not enough tokens are available.
+ *
+ * <p>
+ * Instances are thread-safe. Sharing an instance between several concurrent
+ * transfers makes them share the same bandwidth budget. The rate and the
+ * burst can be changed while transfers are running.
+ * </p>
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class TokenBucket {
+
+    /** The number of bytes per second. 0 or less means no limit. */
+    private long rate;
+
+    /** The maximum number of tokens. */
+    private long burst;
+
+    /** The available tokens. Negative if tokens have been borrowed. */
+    private double tokens;
+
+    /**
+     * The total number of tokens added to the bucket. A caller in debt waits
+     * until this total reaches the value it had when the caller got into
+     * debt, plus the debt.
+     */
+    private double added;
+
+    /** The time of the last refill in nanoseconds. */
+    private long last;
+
+    /**
+     * @param bytesPerSecond  the rate or 0 for no limit
+     * @param burst           the maximum number of bytes which can be
+     *                        transferred without waiting
+     */
+    public TokenBucket( long bytesPerSecond, long burst ) {
+        this.rate = bytesPerSecond;
+        this.burst = burst;
+        tokens = burst;
+        last = System.nanoTime();
+    }
+
+    /**
+     * Change the rate and the burst. Transfers waiting for tokens take the new
+     * values into account.
+     */
+    public synchronized void setRate( long bytesPerSecond, long burst ) {
+        refill();
+        this.rate = bytesPerSecond;
+        this.burst = burst;
+        tokens = Math.min(tokens,burst);
+        notifyAll();
+    }
+
+    public synchronized long getRate() {
+        return rate;
+    }
+
+    public synchronized long getBurst() {
+        return burst;
+    }
+
+    /**
+     * Consume the specified number of tokens. If not enough tokens are
+     * available, they are borrowed and the caller waits until they have been
+     * paid back, along with the tokens borrowed by the callers which got into
+     * debt before it. Tokens borrowed by later callers do not delay it. A
+     * number of tokens greater than the burst can be requested.
+     *
+     * @param n  the number of tokens, i.e. of bytes to transfer
+     */
+    public synchronized void acquire( long n ) throws InterruptedException {
+
+        if ( rate <= 0 )  return;
+
+        refill();
+        tokens -= n;
+        if ( tokens >= 0 )  return;
+
+        double target = added - tokens;
+        while ( added < target && rate > 0 ) {
+            long nanos = (long) ( (target-added) * 1000000000L / rate );
+            nanos = Math.max(nanos,1);
+            long millis = nanos / 1000000L;
+            wait( millis, (int) (nanos % 1000000L) );
+            refill();
+        }
+    }
+
+    /**
+     * Consume the specified number of tokens if they are available.
+     *
+     * @param n  the number of tokens
+     * @return   true if the tokens have been consumed
+     */
+    public synchronized boolean tryAcquire( long n ) {
+        if ( rate <= 0 )  return true;
+        refill();
+        if ( tokens < n ) {
+            return false;
+        }
+        tokens -= n;
+        return true;
+    }
+
+    /** Add the tokens accumulated since the last refill. */
+    private void refill() {
+        long now = System.nanoTime();
+        if ( rate > 0 ) {
+            double before = tokens;
+            tokens += (now-last) * (double) rate / 1000000000L;
+            tokens = Math.min(tokens,burst);
+            added += Math.max(tokens-before,0);
+        }
+        last = now;
+    }
+}
@@ -0,0 +1,207 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class allocates unique file names in directories. As with {@link
+ * FileExt#getUniqueFileName(String, String)}, the original name is used if it
+ * is free, and a numbered suffix is appended to the prefix of the name
+ * otherwise, e.g. name.ext, name0.ext, name1.ext, etc.
+ *
+ * <p>
+ * Names are claimed by atomically creating an empty file, so that two threads
+ * or two processes never obtain the same name. The original name is tried
+ * first, which costs a single file creation when it is free. Otherwise, the
+ * allocator caches, for the directory and the original name, the next index
+ * to try. The directory is listed once, when a numbered name is first needed,
+ * and numbering starts after the greatest index in use. Afterwards, allocating
+ * a name usually costs two file creations, whatever the number of files
+ * sharing the same original name.
+ * </p>
+ *
+ * <p>
+ * At most a given number of indexes are cached. The least recently used one
+ * is forgotten when the limit is reached, in which case the directory is
+ * listed again when needed. Indexes are not reused: a name freed by deleting
+ * its file is not allocated again while its index is cached.
+ * </p>
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class UniqueFileNameAllocator {
+
+    final public static int DEFAULT_MAX_SLOTS = 1024;
+
+    /**
+     * The indexes to try, per directory and original name, in least recently
+     * used order. Guarded by the map itself.
+     */
+    private Map<String,AtomicInteger> slots;
+
+    public UniqueFileNameAllocator() {
+        this(DEFAULT_MAX_SLOTS);
+    }
+
+    /**
+     * @param maxSlots  the maximum number of directory and original name
+     *                  pairs whose next index is cached
+     */
+    public UniqueFileNameAllocator( final int maxSlots ) {
+        if ( maxSlots <= 0 )
+            throw new IllegalArgumentException(
+                    "Parameter 1 (maxSlots) should be strictly positive");
+        slots = new LinkedHashMap<String,AtomicInteger>(16,0.75f,true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String,AtomicInteger> eldest ) {
+                return size() > maxSlots;
+            }
+        };
+    }
+
+    /**
+     * Allocate an unique name for the specified file name in the specified
+     * directory, and create an empty file with this name.
+     *
+     * @param dir       the directory
+     * @param fileName  the original file name
+     * @return          the created file
+     */
+    public File allocate( File dir, String fileName ) throws IOException {
+
+        final File directory = dir.getAbsoluteFile();
+        File file = new File(directory,fileName);
+        if ( create(file) ) {
+            return file;
+        }
+
+        int lastDotIndex = fileName.lastIndexOf('.');
+        String prefix =
+            lastDotIndex==-1 ? fileName : fileName.substring(0,lastDotIndex);
+        String suffix =
+            lastDotIndex==-1 ? "" : fileName.substring(lastDotIndex);
+
+        String key = directory.getPath()+File.separatorChar+fileName;
+        AtomicInteger next;
+        synchronized(slots) {
+            next = slots.get(key);
+        }
+        if ( next == null ) {
+            // List the directory outside of the lock
+            AtomicInteger first =
+                new AtomicInteger( maxIndex(directory,prefix,suffix)+1 );
+            synchronized(slots) {
+                next = slots.get(key);
+                if ( next == null ) {
+                    slots.put(key,first);
+                    next = first;
+                }
+            }
+        }
+
+        while (true) {
+            file = new File(directory,prefix+next.getAndIncrement()+suffix);
+            if ( create(file) ) {
+                return file;
+            }
+        }
+    }
+
+    /**
+     * Forget the indexes cached for the specified directory, for example
+     * after its content has been deleted.
+     */
+    public void clear( File dir ) {
+        String prefix = dir.getAbsoluteFile().getPath()+File.separatorChar;
+        synchronized(slots) {
+            slots.keySet().removeIf( key -> key.startsWith(prefix) &&
+                    key.indexOf(File.separatorChar,prefix.length()) == -1 );
+        }
+    }
+
+
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+
+    /**
+     * Create the specified empty file.
+     *
+     * @return  false if the file already exists
+     */
+    private static boolean create( File file ) throws IOException {
+        try {
+            Files.createFile(file.toPath());
+            return true;
+        }
+        catch( FileAlreadyExistsException faee ) {
+            // Claimed by another thread or process
+            return false;
+        }
+    }
+
+    /**
+     * Return the greatest index used in the specified directory by the names
+     * made of the specified prefix, an index and the specified suffix, or -1.
+     */
+    private static int maxIndex( File dir, String prefix, String suffix ) {
+        int max = -1;
+        String[] names = dir.list();
+        if ( names != null ) {
+            for (String name : names) {
+                if ( name.length() > prefix.length()+suffix.length() &&
+                     name.startsWith(prefix) && name.endsWith(suffix) ) {
+                    String digits =
+                        name.substring(
+                            prefix.length(), name.length()-suffix.length() );
+                    max = Math.max( max, parseIndex(digits) );
+                }
+            }
+        }
+        return max;
+    }
+
+    /** Return the index encoded in the specified string or -1. */
+    private static int parseIndex( String digits ) {
+        if ( digits.length()>9 || (digits.length()>1 && digits.charAt(0)=='0') ) {
+            return -1;
+        }
+        int index = 0;
+        for ( int i=0 ; i < digits.length() ; i++ ) {
+            char c = digits.charAt(i);
+            if ( c<'0' || c>'9' )  return -1;
+            index = index*10 + (c-'0');
+        }
+        return index;
+    }
+}
@@ -0,0 +1,69 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.ipf;
+
+import java.util.Collections;
+import java.util.SortedMap;
+
+/**
+ * Exception thrown if values cannot be injected into some of the objects of a
+ * bulk injection. The exception reports the failure of each object.
+ * 
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class BulkInjectionException extends Exception {
+
+    private static final long serialVersionUID = -3380715496472816935L;
+
+    private SortedMap<Integer,Exception> failures;
+    private int count;
+    
+    /**
+     * @param failures  the exceptions indexed by position of the object
+     * @param count     the number of objects
+     */
+    public BulkInjectionException(
+        SortedMap<Integer,Exception> failures, int count ) {
+        
+        super(failures.get(failures.firstKey()));
+        this.failures = failures;
+        this.count = count;
+    }
+    
+    /**
+     * Return the exceptions indexed by position of the objects into which
+     * values could not be injected.
+     */
+    public SortedMap<Integer,Exception> getFailures() {
+        return Collections.unmodifiableSortedMap(failures);
+    }
+    
+    @Override
+    public String getMessage() {
+        final String msg =
+            failures.size()+" of "+count+" objects could not be injected, "+
+            "first failure at position "+failures.firstKey();
+        return msg;
+    }
+}
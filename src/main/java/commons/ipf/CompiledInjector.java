@@ -0,0 +1,421 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.ipf;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class injects and extracts all the values of the injection points of
+ * an object at once. Each injection point is assigned a slot, i.e. an index in
+ * the arrays of values. Slots follow the alphabetical order of the names of
+ * the injection points.
+ * 
+ * <p>
+ * Instances are created with {@link InjectionPointHashMap#compile()} and
+ * reflect the content of the map at that time. They are immutable and can be
+ * shared between threads.
+ * </p>
+ * 
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class CompiledInjector {
+
+    /**
+     * The number of objects into which values are injected one injection
+     * point after the other by bulk injections.
+     */
+    private static final int BLOCK_SIZE = 256;
+
+    /** The names of the injection points indexed by slot. */
+    private final String[] names;
+    
+    /** The injection points indexed by slot. */
+    private final InjectionPoint<?>[] points;
+    
+    /**
+     * Whether the value of each injection point can be retrieved: one of
+     * {@link #UNKNOWN}, {@link #READABLE} or {@link #UNREADABLE}. Entries are
+     * resolved on the first retrieval so that injection never looks up getter
+     * methods. Concurrent resolutions of the same entry store the same value.
+     */
+    private final byte[] readables;
+    
+    private static final byte UNKNOWN = 0;
+    private static final byte READABLE = 1;
+    private static final byte UNREADABLE = 2;
+    
+    /** The slots indexed by name. */
+    private final Map<String,Integer> slots;
+    
+    CompiledInjector( Map<String,? extends InjectionPoint<?>> map ) {
+        
+        names = map.keySet().toArray(new String[map.size()]);
+        Arrays.sort(names);
+        
+        points = new InjectionPoint<?>[ names.length ];
+        readables = new byte[ names.length ];
+        slots = new HashMap<>();
+        for ( int i=0 ; i < names.length ; i++ ) {
+            points[i] = map.get(names[i]);
+            slots.put(names[i],i);
+        }
+    }
+    
+    /**
+     * Return the number of slots.
+     */
+    public int size() {
+        return names.length;
+    }
+    
+    /**
+     * Return the slot of the injection point associated with the specified
+     * name or -1 if no such injection point exists.
+     */
+    public int getSlot( String name ) {
+        Integer slot = slots.get(name);
+        return slot==null ? -1 : slot;
+    }
+    
+    /**
+     * Return the name of the injection point associated with the specified
+     * slot.
+     */
+    public String getName( int slot ) {
+        return names[slot];
+    }
+    
+    /**
+     * Return the injection point associated with the specified slot.
+     */
+    public InjectionPoint<?> getInjectionPoint( int slot ) {
+        return points[slot];
+    }
+    
+    /**
+     * Inject the specified values into the specified object. Null values are
+     * skipped.
+     * 
+     * @param target  the object
+     * @param values  the values indexed by slot
+     * @throws IllegalArgumentException
+     *      if the length of the array is not the number of slots
+     */
+    public void inject( Object target, Object[] values )
+    throws IllegalAccessException, InvocationTargetException {
+        
+        checkLength(values);
+        for ( int i=0 ; i < points.length ; i++ ) {
+            Object value = values[i];
+            if( value != null ) {
+                points[i].set(target,value);
+            }
+        }
+    }
+    
+    /**
+     * Inject the specified values into each of the specified objects. See
+     * {@link #injectAll(List, Object[], ForkJoinPool)}.
+     */
+    public void injectAll( List<?> targets, Object[] values )
+    throws BulkInjectionException {
+        injectAll(targets,values,null);
+    }
+    
+    /**
+     * Inject the specified values into each of the specified objects. Null
+     * values are skipped. Objects are processed by blocks: for each injection
+     * point, the value is injected into all the objects of the block before
+     * moving to the next injection point. When an injection fails for an
+     * object, the remaining injection points of this object are skipped and
+     * the other objects are processed.
+     * 
+     * @param targets  the objects
+     * @param values   the values indexed by slot
+     * @param pool     the pool where blocks are processed in parallel, or
+     *                 <code>null</code> to process them in the current thread
+     * @throws BulkInjectionException
+     *      if values could not be injected into some objects
+     * @throws IllegalArgumentException
+     *      if the length of the array is not the number of slots
+     */
+    public void injectAll( List<?> targets, Object[] values, ForkJoinPool pool )
+    throws BulkInjectionException {
+        
+        checkLength(values);
+        Object[] objects = targets.toArray();
+        Exception[] failures = new Exception[ objects.length ];
+        
+        if( pool==null || objects.length <= BLOCK_SIZE ) {
+            for ( int from=0 ; from < objects.length ; from+=BLOCK_SIZE ) {
+                int to = Math.min(from+BLOCK_SIZE,objects.length);
+                injectBlock(objects,from,to,values,failures);
+            }
+        }
+        else {
+            pool.invoke(new BulkInjection(objects,0,objects.length,values,failures));
+        }
+        
+        SortedMap<Integer,Exception> map = new TreeMap<>();
+        for ( int i=0 ; i < failures.length ; i++ ) {
+            if( failures[i] != null ) {
+                map.put(i,failures[i]);
+            }
+        }
+        if( ! map.isEmpty() ) {
+            throw new BulkInjectionException(map,objects.length);
+        }
+    }
+    
+    /**
+     * Capture the values of the injection points of the specified object.
+     * See {@link Snapshot}.
+     */
+    public Snapshot snapshot( Object target )
+    throws IllegalAccessException, InvocationTargetException {
+        
+        Object[] values = new Object[ points.length ];
+        extract(target,values);
+        return new Snapshot(this,values);
+    }
+    
+    /**
+     * Retrieve the values of the injection points of the specified object.
+     * The value of a setter method without a getter method is
+     * <code>null</code>.
+     * 
+     * @param target  the object
+     * @param out     the array where values are stored, indexed by slot
+     * @throws IllegalArgumentException
+     *      if the length of the array is not the number of slots
+     */
+    public void extract( Object target, Object[] out )
+    throws IllegalAccessException, InvocationTargetException {
+        
+        checkLength(out);
+        for ( int i=0 ; i < points.length ; i++ ) {
+            out[i] = isReadable(i) ? points[i].get(target) : null;
+        }
+    }
+    
+    
+    /**
+     * The values of the injection points of an object indexed by slot. A
+     * snapshot is shallow: it holds references to the values, not copies of
+     * them. Snapshots can be refreshed in place with {@link #capture(Object)}
+     * and copied with {@link #copy()}: copies share their array of values
+     * until one of them is modified. Snapshots are not thread-safe.
+     */
+    public static class Snapshot {
+        
+        private CompiledInjector injector;
+        private Object[] values;
+        
+        /** <code>true</code> if the array of values may be shared. */
+        private boolean shared;
+        
+        private Snapshot( CompiledInjector injector, Object[] values ) {
+            this.injector = injector;
+            this.values = values;
+        }
+        
+        public CompiledInjector getInjector() {
+            return injector;
+        }
+        
+        /**
+         * Return the value associated with the specified slot.
+         */
+        public Object get( int slot ) {
+            return values[slot];
+        }
+        
+        /**
+         * Change the value associated with the specified slot.
+         */
+        public void set( int slot, Object value ) {
+            if( shared ) {
+                values = values.clone();
+                shared = false;
+            }
+            values[slot] = value;
+        }
+        
+        /**
+         * Capture again the values of the injection points of the specified
+         * object. The array of values is reused unless it is shared.
+         */
+        public void capture( Object target )
+        throws IllegalAccessException, InvocationTargetException {
+            if( shared ) {
+                values = new Object[ values.length ];
+                shared = false;
+            }
+            injector.extract(target,values);
+        }
+        
+        /**
+         * Restore the values of the injection points of the specified object.
+         * Null values are restored, except for injection points of primitive
+         * types and for setter methods without getter methods, whose values
+         * were not captured.
+         */
+        public void restore( Object target )
+        throws IllegalAccessException, InvocationTargetException {
+            
+            InjectionPoint<?>[] points = injector.points;
+            for ( int i=0 ; i < points.length ; i++ ) {
+                Object value = values[i];
+                if( value!=null ||
+                    (injector.isReadable(i) && ! points[i].getType().isPrimitive()) ) {
+                    points[i].set(target,value);
+                }
+            }
+        }
+        
+        /**
+         * Return a copy of this snapshot. The array of values is only copied
+         * when either snapshot is modified.
+         */
+        public Snapshot copy() {
+            shared = true;
+            Snapshot copy = new Snapshot(injector,values);
+            copy.shared = true;
+            return copy;
+        }
+    }
+    
+    
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+    
+    /**
+     * Return <code>true</code> if the value of the injection point associated
+     * with the specified slot can be retrieved.
+     */
+    private boolean isReadable( int slot ) {
+        byte readable = readables[slot];
+        if( readable == UNKNOWN ) {
+            readable = isReadable(points[slot]) ? READABLE : UNREADABLE;
+            readables[slot] = readable;
+        }
+        return readable == READABLE;
+    }
+    
+    /**
+     * Return <code>true</code> if the value of the specified injection point
+     * can be retrieved.
+     */
+    private static boolean isReadable( InjectionPoint<?> ip ) {
+        if( ip instanceof InjectionPointMethodImpl ) {
+            return ((InjectionPointMethodImpl<?>)ip).getGetterMethod() != null;
+        }
+        if( ip instanceof GeneratedInjectionPoint ) {
+            return ((GeneratedInjectionPoint)ip).isReadable();
+        }
+        return true;
+    }
+    
+    /**
+     * Inject the specified values into the objects located between the
+     * specified indexes, one injection point after the other.
+     */
+    private void injectBlock(
+        Object[] objects, int from, int to, Object[] values,
+        Exception[] failures ) {
+        
+        for ( int i=0 ; i < points.length ; i++ ) {
+            Object value = values[i];
+            if( value == null ) {
+                continue;
+            }
+            InjectionPoint<?> ip = points[i];
+            for ( int j=from ; j < to ; j++ ) {
+                if( failures[j] != null ) {
+                    continue;
+                }
+                try {
+                    ip.set(objects[j],value);
+                }
+                catch( IllegalAccessException | InvocationTargetException |
+                       RuntimeException e ) {
+                    failures[j] = e;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Task splitting a bulk injection until blocks are reached.
+     */
+    private class BulkInjection extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private Object[] objects;
+        private int from, to;
+        private Object[] values;
+        private Exception[] failures;
+        
+        BulkInjection(
+            Object[] objects, int from, int to, Object[] values,
+            Exception[] failures ) {
+            
+            this.objects = objects;
+            this.from = from;
+            this.to = to;
+            this.values = values;
+            this.failures = failures;
+        }
+        
+        @Override
+        protected void compute() {
+            if( to-from <= BLOCK_SIZE ) {
+                injectBlock(objects,from,to,values,failures);
+                return;
+            }
+            int middle = (from+to) >>> 1;
+            invokeAll(
+                new BulkInjection(objects,from,middle,values,failures),
+                new BulkInjection(objects,middle,to,values,failures) );
+        }
+    }
+    
+    private void checkLength( Object[] values ) {
+        if( values.length != points.length ) {
+            final String msg =
+                "Array of length "+values.length+" for "+points.length+" slots";
+            throw new IllegalArgumentException(msg);
+        }
+    }
+}
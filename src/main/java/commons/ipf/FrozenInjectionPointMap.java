@@ -0,0 +1,148 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.ipf;
+
+import java.lang.annotation.Annotation;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is an immutable snapshot of an {@link InjectionPointHashMap}.
+ * Injection points are stored in a flat array indexed with open addressing
+ * and linear probing over the hash codes of their names.
+ * 
+ * <p>
+ * All fields are final: once constructed, instances can be published and
+ * shared between threads without synchronization.
+ * </p>
+ * 
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public final class FrozenInjectionPointMap<A extends Annotation> {
+
+    /** The names of the injection points, <code>null</code> for free slots. */
+    private final String[] names;
+    
+    /** The hash codes of the names. */
+    private final int[] hashes;
+    
+    /** The injection points. */
+    private final InjectionPoint<A>[] points;
+    
+    /** The mask of the indexes in the arrays. */
+    private final int mask;
+    
+    private final int size;
+    
+    FrozenInjectionPointMap( Map<String,InjectionPoint<A>> map ) {
+        
+        // A load factor of at most 0.5 keeps probe sequences short
+        int capacity = Integer.highestOneBit( Math.max(map.size(),1) ) << 2;
+        mask = capacity - 1;
+        size = map.size();
+        
+        names = new String[capacity];
+        hashes = new int[capacity];
+        @SuppressWarnings("unchecked")
+        InjectionPoint<A>[] points =
+            (InjectionPoint<A>[]) new InjectionPoint<?>[capacity];
+        this.points = points;
+        
+        for (Map.Entry<String,InjectionPoint<A>> entry : map.entrySet()) {
+            String name = entry.getKey();
+            int h = hash(name);
+            int i = h & mask;
+            while( names[i] != null ) {
+                i = (i+1) & mask;
+            }
+            names[i] = name;
+            hashes[i] = h;
+            points[i] = entry.getValue();
+        }
+    }
+    
+    /**
+     * Return the injection point associated with the specified name or
+     * <code>null</code>.
+     */
+    public InjectionPoint<A> get( String name ) {
+        int h = hash(name);
+        int i = h & mask;
+        String n;
+        while( (n=names[i]) != null ) {
+            if( hashes[i]==h && (n==name || n.equals(name)) ) {
+                return points[i];
+            }
+            i = (i+1) & mask;
+        }
+        return null;
+    }
+    
+    public boolean containsKey( String name ) {
+        return get(name) != null;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Return the names of the injection points.
+     */
+    public String[] getNames() {
+        String[] ret = new String[size];
+        int j = 0;
+        for (String name : names) {
+            if( name != null ) {
+                ret[j++] = name;
+            }
+        }
+        return ret;
+    }
+    
+    /**
+     * Return an injector setting and getting the values of all the injection
+     * points of this map at once.
+     */
+    public CompiledInjector compile() {
+        Map<String,InjectionPoint<A>> map = new HashMap<>();
+        for ( int i=0 ; i < names.length ; i++ ) {
+            if( names[i] != null ) {
+                map.put(names[i],points[i]);
+            }
+        }
+        return new CompiledInjector(map);
+    }
+    
+    
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+    
+    /** Spread the high bits of the hash code to the low ones. */
+    private static int hash( String name ) {
+        int h = name.hashCode();
+        return h ^ (h>>>16);
+    }
+}
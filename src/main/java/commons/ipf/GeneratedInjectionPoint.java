@@ -0,0 +1,164 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.ipf;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.InvocationTargetException;
+
+import commons.lang.reflect.AnnotatedElementHelper;
+
+/**
+ * This class represents an injection point whose accessors have been
+ * generated at compile time by {@link commons.ipf.apt.InjectionPointProcessor}.
+ * Generated subclasses implement {@link #set(Object, Object)} and, when a
+ * getter exists, {@link #get(Object)} by directly accessing the field or
+ * invoking the setter and getter methods.
+ * 
+ * <p>
+ * The annotation associated with the injection point is only retrieved by
+ * reflection when {@link #getAnnotation()} is first called.
+ * </p>
+ * 
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public abstract class GeneratedInjectionPoint
+implements InjectionPoint<Annotation> {
+
+    private Class<?> declaringClass;
+    
+    /** The name of the field or of the setter method. */
+    private String memberName;
+    
+    private boolean isField;
+    private Class<?> type;
+    private String annotClassName;
+    private boolean readable;
+    
+    private volatile Annotation annot;
+    
+    /**
+     * @param declaringClass  the class declaring the field or the setter
+     * @param memberName      the name of the field or of the setter
+     * @param isField         <code>true</code> for a field
+     * @param type            the type of the injection point
+     * @param annotClassName  the name of the annotation type
+     * @param readable        <code>true</code> if {@link #get(Object)} is
+     *                        implemented
+     */
+    protected GeneratedInjectionPoint(
+        Class<?> declaringClass, String memberName, boolean isField,
+        Class<?> type, String annotClassName, boolean readable ) {
+        
+        this.declaringClass = declaringClass;
+        this.memberName = memberName;
+        this.isField = isField;
+        this.type = type;
+        this.annotClassName = annotClassName;
+        this.readable = readable;
+    }
+    
+    public Object get( Object target )
+    throws
+        IllegalAccessException, InvocationTargetException,
+        UnsupportedOperationException {
+        
+        final String msg = "Cannot get the value with a setter method";
+        throw new UnsupportedOperationException(msg);
+    }
+    
+    /**
+     * Return <code>true</code> if {@link #get(Object)} can be called.
+     */
+    public boolean isReadable() {
+        return readable;
+    }
+    
+    public Annotation getAnnotation() {
+        Annotation annot = this.annot;
+        if( annot == null ) {
+            AccessibleObject ao;
+            try {
+                ao = isField ?
+                    declaringClass.getDeclaredField(memberName) :
+                    declaringClass.getDeclaredMethod(memberName,type);
+            }
+            catch( NoSuchFieldException | NoSuchMethodException e ) {
+                // The class has been modified since the code was generated
+                throw new IllegalStateException(e);
+            }
+            annot = AnnotatedElementHelper.getAnnotation(ao,annotClassName);
+            this.annot = annot;
+        }
+        return annot;
+    }
+    
+    public Class<?> getType() {
+        return type;
+    }
+    
+    /**
+     * Return the exception reported by generated accessors when the specified
+     * target or value does not match the injection point. As with reflection,
+     * a mismatch is reported with an {@link IllegalArgumentException}.
+     */
+    protected IllegalArgumentException illegalArgument(
+        Object target, Object value ) {
+        
+        final String msg =
+            "Cannot set "+declaringClass.getName()+"."+memberName+" of type "+
+            type.getName()+" on "+getClassName(target)+" with "+
+            getClassName(value);
+        return new IllegalArgumentException(msg);
+    }
+    
+    /**
+     * Return the exception reported by generated accessors when the specified
+     * target does not match the injection point whose value is retrieved.
+     */
+    protected IllegalArgumentException illegalArgument( Object target ) {
+        final String msg =
+            "Cannot get "+declaringClass.getName()+"."+memberName+" of type "+
+            type.getName()+" from "+getClassName(target);
+        return new IllegalArgumentException(msg);
+    }
+    
+    private static String getClassName( Object o ) {
+        return o==null ? "null" : o.getClass().getName();
+    }
+    
+    public boolean override( InjectionPoint<?> other ) {
+        if( ! (other instanceof GeneratedInjectionPoint) ) {
+            return false;
+        }
+        GeneratedInjectionPoint gip = (GeneratedInjectionPoint) other;
+        boolean b =
+            isField == gip.isField &&
+            memberName.equals(gip.memberName) &&
+            (isField || type.equals(gip.type)) &&
+            declaringClass != gip.declaringClass &&
+            gip.declaringClass.isAssignableFrom(declaringClass);
+        return b;
+    }
+}
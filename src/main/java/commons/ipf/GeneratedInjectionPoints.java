@@ -0,0 +1,77 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.ipf;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Root class of the tables of injection points generated at compile time by
+ * {@link commons.ipf.apt.InjectionPointProcessor}. The table generated for a
+ * class named <code>C</code> is named <code>C$$InjectionPoints</code> and is
+ * used by {@link InjectionPointHashMap} instead of introspecting
+ * <code>C</code>.
+ * 
+ * <p>
+ * A generated table contains the injection points of the class, overridden
+ * ones excluded, for each configured list of annotation type names.
+ * </p>
+ * 
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public abstract class GeneratedInjectionPoints {
+
+    /** The suffix of the names of generated tables. */
+    public static final String SUFFIX = "$$InjectionPoints";
+    
+    private Map<List<String>,Map<String,InjectionPoint<Annotation>>> tables =
+        new HashMap<>();
+    
+    /**
+     * Return the injection points indexed by name for the specified annotation
+     * type names, or <code>null</code> if no table has been generated for
+     * these names.
+     */
+    public Map<String,InjectionPoint<Annotation>> getInjectionPoints(
+        String... annotClassNames ) {
+        
+        return tables.get(Arrays.asList(annotClassNames));
+    }
+    
+    /**
+     * Create and register the map of the injection points for the specified
+     * annotation type names. Called by the constructor of generated tables.
+     */
+    protected Map<String,InjectionPoint<Annotation>> newTable(
+        String... annotClassNames ) {
+        
+        Map<String,InjectionPoint<Annotation>> table = new LinkedHashMap<>();
+        tables.put(Arrays.asList(annotClassNames),table);
+        return table;
+    }
+}
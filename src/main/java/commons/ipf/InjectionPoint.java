@@ -49,6 +49,91 @@ public interface InjectionPoint<A extends Annotation> {
     public Object get( Object target )
     throws IllegalAccessException, InvocationTargetException;
     
+    /**
+     * Set an <code>int</code> value. As with {@link
+     * java.lang.reflect.Field#setInt(Object, int)}, the value is converted by
+     * a widening conversion if the type of the injection point is another
+     * primitive type. The default implementation boxes the value and calls
+     * {@link #set(Object, Object)}.
+     */
+    public default void setInt( Object target, int value )
+    throws IllegalAccessException, InvocationTargetException {
+        set(target,value);
+    }
+    
+    /**
+     * Set a <code>long</code> value. See {@link #setInt(Object, int)}.
+     */
+    public default void setLong( Object target, long value )
+    throws IllegalAccessException, InvocationTargetException {
+        set(target,value);
+    }
+    
+    /**
+     * Set a <code>double</code> value. See {@link #setInt(Object, int)}.
+     */
+    public default void setDouble( Object target, double value )
+    throws IllegalAccessException, InvocationTargetException {
+        set(target,value);
+    }
+    
+    /**
+     * Return the value as an <code>int</code>. As with {@link
+     * java.lang.reflect.Field#getInt(Object)}, the value is converted by a
+     * widening conversion if the type of the injection point is another
+     * primitive type. The default implementation calls {@link #get(Object)}
+     * and unboxes the value.
+     * 
+     * @throws IllegalArgumentException
+     *      if the value cannot be converted to an <code>int</code>
+     */
+    public default int getInt( Object target )
+    throws IllegalAccessException, InvocationTargetException {
+        Object value = get(target);
+        if( value instanceof Character ) {
+            return (Character) value;
+        }
+        if( value instanceof Integer || value instanceof Short ||
+            value instanceof Byte ) {
+            return ((Number)value).intValue();
+        }
+        throw new IllegalArgumentException("Cannot convert "+value+" to int");
+    }
+    
+    /**
+     * Return the value as a <code>long</code>. See {@link #getInt(Object)}.
+     */
+    public default long getLong( Object target )
+    throws IllegalAccessException, InvocationTargetException {
+        Object value = get(target);
+        if( value instanceof Character ) {
+            return (Character) value;
+        }
+        if( value instanceof Long || value instanceof Integer ||
+            value instanceof Short || value instanceof Byte ) {
+            return ((Number)value).longValue();
+        }
+        throw new IllegalArgumentException("Cannot convert "+value+" to long");
+    }
+    
+    /**
+     * Return the value as a <code>double</code>. See {@link #getInt(Object)}.
+     */
+    public default double getDouble( Object target )
+    throws IllegalAccessException, InvocationTargetException {
+        Object value = get(target);
+        if( value instanceof Character ) {
+            return (Character) value;
+        }
+        if( value instanceof Double || value instanceof Float ||
+            value instanceof Long || value instanceof Integer ||
+            value instanceof Short || value instanceof Byte ) {
+            return ((Number)value).doubleValue();
+        }
+        throw new IllegalArgumentException(
+            "Cannot convert "+value+" to double");
+    }
+    
     /**
      * Return the annotation associated with the current injection point.
      */
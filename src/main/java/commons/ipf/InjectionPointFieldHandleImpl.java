@@ -0,0 +1,248 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.ipf;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+
+import commons.lang.ClassHelper;
+
+/**
+ * This class represents an injection point which is implemented as a field
+ * accessed with method handles. Once compiled, setting and getting the value
+ * costs about as much as a direct field access.
+ * 
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class InjectionPointFieldHandleImpl<A extends Annotation>
+extends InjectionPointFieldImpl<A> {
+
+    private static final MethodType SETTER_TYPE =
+        MethodType.methodType(void.class,Object.class,Object.class);
+    private static final MethodType GETTER_TYPE =
+        MethodType.methodType(Object.class,Object.class);
+
+    /** The type of the field, primitive types being boxed. */
+    private Class<?> boxedType;
+    private boolean primitive;
+
+    /** The class declaring the injection point. */
+    private Class<?> declaringClass;
+
+    private MethodHandle setter;
+    private MethodHandle getter;
+
+    /**
+     * The handles setting and getting primitive values without boxing, or
+     * <code>null</code> if the type of the field does not allow it.
+     */
+    private MethodHandle intSetter, longSetter, doubleSetter;
+    private MethodHandle intGetter, longGetter, doubleGetter;
+
+    /**
+     * @throws IllegalAccessException
+     *      if the field can not be accessed with method handles, e.g. if it
+     *      is final
+     */
+    public InjectionPointFieldHandleImpl( Field field, A annot )
+    throws IllegalAccessException {
+        
+        super(field,annot);
+        
+        Class<?> type = field.getType();
+        boxedType = ClassHelper.box(type);
+        primitive = type.isPrimitive();
+        declaringClass = field.getDeclaringClass();
+        
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle s = lookup.unreflectSetter(field);
+        MethodHandle g = lookup.unreflectGetter(field);
+        setter = s.asType(SETTER_TYPE);
+        getter = g.asType(GETTER_TYPE);
+        
+        intSetter = adapt(s,type,void.class,Object.class,int.class);
+        longSetter = adapt(s,type,void.class,Object.class,long.class);
+        doubleSetter = adapt(s,type,void.class,Object.class,double.class);
+        intGetter = adapt(g,type,int.class,Object.class);
+        longGetter = adapt(g,type,long.class,Object.class);
+        doubleGetter = adapt(g,type,double.class,Object.class);
+    }
+    
+    @Override
+    public void set( Object target, Object value )
+    throws IllegalAccessException {
+        
+        if( ! declaringClass.isInstance(target) ||
+            (value==null ? primitive : !boxedType.isInstance(value)) ) {
+            /*
+             * Let reflection perform widening conversions or report the
+             * error.
+             */
+            super.set(target,value);
+            return;
+        }
+        
+        try {
+            setter.invokeExact(target,value);
+        }
+        catch( RuntimeException | Error e ) {
+            throw e;
+        }
+        catch( Throwable t ) {
+            // Accessing a field does not throw checked exceptions
+            throw new IllegalStateException(t);
+        }
+    }
+    
+    @Override
+    public Object get( Object target ) throws IllegalAccessException {
+        
+        if( ! declaringClass.isInstance(target) ) {
+            return super.get(target);
+        }
+        
+        try {
+            return (Object) getter.invokeExact(target);
+        }
+        catch( RuntimeException | Error e ) {
+            throw e;
+        }
+        catch( Throwable t ) {
+            // Accessing a field does not throw checked exceptions
+            throw new IllegalStateException(t);
+        }
+    }
+    
+    @Override
+    public void setInt( Object target, int value )
+    throws IllegalAccessException {
+        
+        if( intSetter==null || ! declaringClass.isInstance(target) ) {
+            super.setInt(target,value);
+            return;
+        }
+        try {
+            intSetter.invokeExact(target,value);
+        }
+        catch( Throwable t ) {
+            throw rethrow(t);
+        }
+    }
+    
+    @Override
+    public void setLong( Object target, long value )
+    throws IllegalAccessException {
+        
+        if( longSetter==null || ! declaringClass.isInstance(target) ) {
+            super.setLong(target,value);
+            return;
+        }
+        try {
+            longSetter.invokeExact(target,value);
+        }
+        catch( Throwable t ) {
+            throw rethrow(t);
+        }
+    }
+    
+    @Override
+    public void setDouble( Object target, double value )
+    throws IllegalAccessException {
+        
+        if( doubleSetter==null || ! declaringClass.isInstance(target) ) {
+            super.setDouble(target,value);
+            return;
+        }
+        try {
+            doubleSetter.invokeExact(target,value);
+        }
+        catch( Throwable t ) {
+            throw rethrow(t);
+        }
+    }
+    
+    @Override
+    public int getInt( Object target ) throws IllegalAccessException {
+        
+        if( intGetter==null || ! declaringClass.isInstance(target) ) {
+            return super.getInt(target);
+        }
+        try {
+            return (int) intGetter.invokeExact(target);
+        }
+        catch( Throwable t ) {
+            throw rethrow(t);
+        }
+    }
+    
+    @Override
+    public long getLong( Object target ) throws IllegalAccessException {
+        
+        if( longGetter==null || ! declaringClass.isInstance(target) ) {
+            return super.getLong(target);
+        }
+        try {
+            return (long) longGetter.invokeExact(target);
+        }
+        catch( Throwable t ) {
+            throw rethrow(t);
+        }
+    }
+    
+    @Override
+    public double getDouble( Object target ) throws IllegalAccessException {
+        
+        if( doubleGetter==null || ! declaringClass.isInstance(target) ) {
+            return super.getDouble(target);
+        }
+        try {
+            return (double) doubleGetter.invokeExact(target);
+        }
+        catch( Throwable t ) {
+            throw rethrow(t);
+        }
+    }
+    
+    
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+    
+    /**
+     * Rethrow unchecked exceptions. Accessing a field does not throw checked
+     * exceptions: wrap them in an {@link IllegalStateException}.
+     */
+    private static RuntimeException rethrow( Throwable t ) {
+        if( t instanceof RuntimeException ) {
+            throw (RuntimeException) t;
+        }
+        if( t instanceof Error ) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -54,6 +54,39 @@ extends InjectionPointImpl<A> {
         return value;
     }
     
+    @Override
+    public void setInt( Object target, int value )
+    throws IllegalAccessException {
+        field.setInt(target,value);
+    }
+    
+    @Override
+    public void setLong( Object target, long value )
+    throws IllegalAccessException {
+        field.setLong(target,value);
+    }
+    
+    @Override
+    public void setDouble( Object target, double value )
+    throws IllegalAccessException {
+        field.setDouble(target,value);
+    }
+    
+    @Override
+    public int getInt( Object target ) throws IllegalAccessException {
+        return field.getInt(target);
+    }
+    
+    @Override
+    public long getLong( Object target ) throws IllegalAccessException {
+        return field.getLong(target);
+    }
+    
+    @Override
+    public double getDouble( Object target ) throws IllegalAccessException {
+        return field.getDouble(target);
+    }
+    
     public Field getField() {
         return field;
     }
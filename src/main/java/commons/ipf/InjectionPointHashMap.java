@@ -24,13 +24,12 @@
 package commons.ipf;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 
-import commons.lang.ClassHelper;
-import commons.lang.annotation.AnnotationHelper;
 import commons.lang.reflect.SetterMethodFilter;
 
 /**
@@ -38,6 +37,12 @@ import commons.lang.reflect.SetterMethodFilter;
  * in the inherited map and are indexed by their name. The name is typically a
  * property or a reference name.
  * 
+ * <p>
+ * The introspection of a class is performed once for a given set of
+ * annotation types. Its result is shared by all the maps associated with the
+ * class and these annotation types.
+ * </p>
+ * 
  * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
  */
 public class InjectionPointHashMap<A extends Annotation>
@@ -65,24 +70,19 @@ extends HashMap<String,InjectionPoint<A>> {
      */
     public void putAll() throws DuplicationInjectionPointException {
         
-        AccessibleObject[] aos =
-            ClassHelper.getAllAnnotatedSettersAndFields(cl,annotClass.getName());        
-        for (AccessibleObject ao : aos) {
-            
-            /*
-             * Check whether the accessible object has a 'name' annotation
-             * parameter. If the 'name' annotation parameter is not found, infer
-             * the name from the setter method name or the field.
-             */
-            String ipname = getInjectionPointName(ao);
+        InjectionPointTable table = getInjectionPointTable();
+        for (Map.Entry<String,InjectionPoint<Annotation>> entry :
+             table.getInjectionPoints().entrySet()) {
             
-            A annot = ao.getAnnotation(annotClass);
-            InjectionPoint<A> ip =
-                InjectionPointImpl.getInjectionPoint(ao,annot);
+            String ipname = entry.getKey();
+            if( table.isDuplicate(ipname) ) {
+                throw newDuplicationException(ipname);
+            }
+            InjectionPoint<A> ip = cast(entry.getValue());
 
             /*
-             * Check whether the name has already been encountered before. If
-             * so, this means that more than one injection point (setter or
+             * Check whether the name has already been registered in this map.
+             * If so, this means that more than one injection point (setter or
              * field) exists, which is inconsistent.
              */
             if( containsKey(ipname) ) {
@@ -109,8 +109,7 @@ extends HashMap<String,InjectionPoint<A>> {
                          * Another injection point exists for the same name, and
                          * none of them overrides the other one.
                          */
-                        throw new DuplicationInjectionPointException(
-                                ipname,cl,annotClass.getName());                        
+                        throw newDuplicationException(ipname);
                     }
                 }
             }
@@ -123,52 +122,29 @@ extends HashMap<String,InjectionPoint<A>> {
     /**
      * Register the injection point associated with the specified name by
      * introspecting the class associated with this instance. The name is
-     * typically a property or a reference name.
+     * typically a property or a reference name. Overridden injection points
+     * are discarded.
      */
     public void put( String name )
     throws NoSuchInjectionPointException, DuplicationInjectionPointException {
         
-        AccessibleObject[] aos =
-            ClassHelper.getAllAnnotatedSettersAndFields(cl,annotClass.getName());   
-        boolean found = false;
-        for (AccessibleObject ao : aos) {
-            
-            /*
-             * Check whether the accessible object has a 'name' annotation
-             * parameter. If the 'name' annotation parameter is not found, infer
-             * the name from the setter method name or the field.
-             */
-            String ipname = getInjectionPointName(ao);
-
-            if( ipname.equals(name) ) {
-                
-                /*
-                 * Check whether the name has already been encountered before.
-                 * If so, this means that more than one injection point (setter
-                 * or field) exists, which is inconsistent.
-                 */
-                if( containsKey(name) ) {
-                    // TODO check for overriding (as for putAll)
-                    throw new DuplicationInjectionPointException(
-                            name,cl,annotClass.getName());
-                }
-
-                A annot = ao.getAnnotation(annotClass);
-                InjectionPoint<A> ip =
-                    InjectionPointImpl.getInjectionPoint(ao,annot);
-                put(name,ip);
-                
-                /*
-                 * Needed to be sure we iterate on all elements of aos to check
-                 * for duplicate elements.
-                 */
-                found = true;
-            }
+        InjectionPointTable table = getInjectionPointTable();
+        InjectionPoint<Annotation> ip = table.get(name);
+        if( ip == null ) {
+            throw new NoSuchInjectionPointException(
+                name,cl,getAnnotationClassNames());
         }
         
-        if(!found) {
-            throw new NoSuchInjectionPointException(name,cl,annotClass.getName());
+        /*
+         * Check whether the name has already been encountered before. If so,
+         * this means that more than one injection point (setter or field)
+         * exists, which is inconsistent.
+         */
+        if( table.isDuplicate(name) || containsKey(name) ) {
+            throw newDuplicationException(name);
         }
+        
+        put(name,cast(ip));
     }
     
     /**
@@ -222,37 +198,57 @@ extends HashMap<String,InjectionPoint<A>> {
         put(name,ip);
     }
     
+    /**
+     * Return an injector setting and getting the values of all the injection
+     * points registered in this map at once.
+     */
+    public CompiledInjector compile() {
+        return new CompiledInjector(this);
+    }
+    
+    /**
+     * Return an immutable snapshot of this map which can be shared between
+     * threads.
+     */
+    public FrozenInjectionPointMap<A> freeze() {
+        return new FrozenInjectionPointMap<>(this);
+    }
+    
     
     // ---------------------------------------------------------------------
     // Implementation specific
     // ---------------------------------------------------------------------
     
     /**
-     * Return the name of the injection point associated with the specified
-     * element (setter method or field.) Retrieve the name from the name
-     * parameter of the annotation. If missing, infer the name from the setter
-     * method or the field.
+     * Return the names of the annotation types of the injection points managed
+     * by this instance.
      */
-    private String getInjectionPointName( AccessibleObject ao ) {
-        
-        /*
-         * Check whether the accessible object has a 'name' annotation
-         * parameter. If the 'name' annotation parameter is not found, infer
-         * the name from the setter method name or the field.
-         */
-        A annot = ao.getAnnotation(annotClass);
-        String name = AnnotationHelper.getAnnotationParamValue(annot,"name");
-        if( name==null || name.length() == 0 ) {
-            if( ao instanceof Method ) {
-                Method method = (Method) ao;
-                name = SetterMethodFilter.getSetterPropertyName(method);
-            }
-            else {
-                Field field = (Field) ao;
-                name = field.getName();
-            }
-        }
+    protected String[] getAnnotationClassNames() {
+        return new String[]{ annotClass.getName() };
+    }
+    
+    /**
+     * Return the cached table of the injection points of the class associated
+     * with this instance.
+     */
+    private InjectionPointTable getInjectionPointTable() {
+        return InjectionPointTable.get(cl,getAnnotationClassNames());
+    }
+    
+    private DuplicationInjectionPointException newDuplicationException(
+        String name ) {
         
-        return name;
+        String[] names = getAnnotationClassNames();
+        String str = names.length==1 ? names[0] : Arrays.deepToString(names);
+        return new DuplicationInjectionPointException(name,cl,str);
+    }
+    
+    /**
+     * Injection points in the table are associated with an annotation whose
+     * type name is the one of {@link #annotClass}.
+     */
+    @SuppressWarnings("unchecked")
+    private InjectionPoint<A> cast( InjectionPoint<Annotation> ip ) {
+        return (InjectionPoint<A>) (InjectionPoint<?>) ip;
     }
 }
@@ -24,11 +24,13 @@
 package commons.ipf;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-
-import commons.lang.reflect.MethodHelper;
+import java.lang.reflect.Modifier;
 
 /**
  * Default abstract implementation of the {@link InjectionPoint} interface.
@@ -49,7 +51,9 @@ implements InjectionPoint<A> {
     }
 
     /**
-     * Factory method for injection points.
+     * Factory method for injection points. Injection points access instance
+     * fields and methods with method handles whenever possible, and fall back
+     * on reflection otherwise.
      * 
      * @param ao     a setter method or field
      * @param annot  the annotation
@@ -61,21 +65,53 @@ implements InjectionPoint<A> {
         InjectionPoint<A> ip = null;
         
         if( ao instanceof Method ) {
+            /*
+             * Most injection points are write-only: the getter method is only
+             * looked up when the value is first retrieved.
+             */
             Method setter = (Method) ao;
-            try {
-                Method getter = MethodHelper.getGetterForSetter(setter);
-                ip = new InjectionPointMethodImpl<>(setter,getter,annot);
-            }
-            catch (NoSuchMethodException e) {
-                ip = new InjectionPointMethodImpl<>(setter,annot);
+            if( ! Modifier.isStatic(setter.getModifiers()) ) {
+                try {
+                    ip = new InjectionPointMethodHandleImpl<>(setter,annot,true);
+                    return ip;
+                }
+                catch (IllegalAccessException e) {}
             }
+            ip = new InjectionPointMethodImpl<>(setter,annot,true);
         }
         else {
             Field field = (Field) ao;
+            if( ! Modifier.isStatic(field.getModifiers()) ) {
+                try {
+                    ip = new InjectionPointFieldHandleImpl<>(field,annot);
+                    return ip;
+                }
+                catch (IllegalAccessException e) {}
+            }
             ip = new InjectionPointFieldImpl<>(field,annot);
-            return ip;
         }
     
         return ip;
     }    
+    
+    /**
+     * Return a method handle adapted to the specified type if the specified
+     * injection point type is primitive and if the adaptation only involves
+     * widening conversions, or <code>null</code> otherwise. Used by injection
+     * points implemented with method handles to check once, when they are
+     * created, which primitive accessors can be performed without boxing.
+     */
+    static MethodHandle adapt(
+        MethodHandle mh, Class<?> iptype, Class<?> rtype, Class<?>... ptypes ) {
+        
+        if( mh==null || ! iptype.isPrimitive() ) {
+            return null;
+        }
+        try {
+            return mh.asType(MethodType.methodType(rtype,ptypes));
+        }
+        catch( WrongMethodTypeException wmte ) {
+            return null;
+        }
+    }
 }
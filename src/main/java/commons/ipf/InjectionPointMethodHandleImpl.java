@@ -0,0 +1,312 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.ipf;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import commons.lang.ClassHelper;
+
+/**
+ * This class represents an injection point which is implemented as a setter
+ * method invoked with method handles. Once compiled, setting and getting the
+ * value costs about as much as a direct method call. As with {@link
+ * Method#invoke(Object, Object...)}, exceptions thrown by the setter or the
+ * getter are wrapped in {@link InvocationTargetException}s.
+ * 
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class InjectionPointMethodHandleImpl<A extends Annotation>
+extends InjectionPointMethodImpl<A> {
+
+    private static final MethodType SETTER_TYPE =
+        MethodType.methodType(void.class,Object.class,Object.class);
+    private static final MethodType GETTER_TYPE =
+        MethodType.methodType(Object.class,Object.class);
+
+    /** The type of the injection point, primitive types being boxed. */
+    private Class<?> boxedType;
+    private boolean primitive;
+
+    /** The class declaring the injection point. */
+    private Class<?> declaringClass;
+
+    private MethodHandle setter;
+    private MethodHandle getter;
+
+    /**
+     * The handles setting and getting primitive values without boxing, or
+     * <code>null</code> if the type of the injection point does not allow it.
+     */
+    private MethodHandle intSetter, longSetter, doubleSetter;
+    private MethodHandle intGetter, longGetter, doubleGetter;
+
+    /** <code>true</code> once the getter handles, if any, are known. */
+    private volatile boolean gettersResolved;
+
+    /**
+     * @throws IllegalArgumentException
+     *      if the specified argument is not a setter method
+     * @throws IllegalAccessException
+     *      if the method can not be accessed with method handles
+     */
+    public InjectionPointMethodHandleImpl( Method setter, A annot )
+    throws IllegalArgumentException, IllegalAccessException {
+        
+        this(setter,annot,false);
+    }
+    
+    /**
+     * @param lookupGetter
+     *      if <code>true</code>, the getter method associated with the setter
+     *      is looked up, and its method handles are created, when they are
+     *      first needed
+     * @throws IllegalArgumentException
+     *      if the specified argument is not a setter method
+     * @throws IllegalAccessException
+     *      if the method can not be accessed with method handles
+     */
+    public InjectionPointMethodHandleImpl(
+        Method setter, A annot, boolean lookupGetter )
+    throws IllegalArgumentException, IllegalAccessException {
+        
+        super(setter,annot,lookupGetter);
+        init(setter,null);
+        gettersResolved = ! lookupGetter;
+    }
+    
+    /**
+     * @throws IllegalArgumentException
+     *      if the specified argument is not a setter method
+     * @throws IllegalAccessException
+     *      if the methods can not be accessed with method handles
+     */
+    public InjectionPointMethodHandleImpl( Method setter, Method getter, A annot )
+    throws IllegalArgumentException, IllegalAccessException {
+        
+        super(setter,getter,annot);
+        init(setter,getter);
+        gettersResolved = true;
+    }
+    
+    private void init( Method setter, Method getter )
+    throws IllegalAccessException {
+        
+        Class<?> type = getType();
+        boxedType = ClassHelper.box(type);
+        primitive = type.isPrimitive();
+        declaringClass = setter.getDeclaringClass();
+        
+        MethodHandle s = MethodHandles.lookup().unreflect(setter);
+        this.setter = s.asType(SETTER_TYPE);
+        intSetter = adapt(s,type,void.class,Object.class,int.class);
+        longSetter = adapt(s,type,void.class,Object.class,long.class);
+        doubleSetter = adapt(s,type,void.class,Object.class,double.class);
+        
+        if( getter != null ) {
+            initGetter(getter);
+        }
+    }
+    
+    private void initGetter( Method getter ) throws IllegalAccessException {
+        
+        Class<?> type = getType();
+        MethodHandle g = MethodHandles.lookup().unreflect(getter);
+        if( Modifier.isStatic(getter.getModifiers()) ) {
+            // Ignore the target as Method#invoke does for static methods
+            g = MethodHandles.dropArguments(g,0,Object.class);
+        }
+        this.getter = g.asType(GETTER_TYPE);
+        intGetter = adapt(g,type,int.class,Object.class);
+        longGetter = adapt(g,type,long.class,Object.class);
+        doubleGetter = adapt(g,type,double.class,Object.class);
+    }
+    
+    /**
+     * Look up the getter method and create its method handles if this has not
+     * been done yet. If the getter can not be accessed with method handles,
+     * its value is retrieved with reflection.
+     */
+    private void resolveGetters() {
+        if( gettersResolved ) {
+            return;
+        }
+        synchronized(this) {
+            if( ! gettersResolved ) {
+                Method getter = getGetterMethod();
+                if( getter != null ) {
+                    try {
+                        initGetter(getter);
+                    }
+                    catch (IllegalAccessException e) {
+                        this.getter = null;
+                    }
+                }
+                gettersResolved = true;
+            }
+        }
+    }
+    
+    @Override
+    public void set( Object target, Object value )
+    throws IllegalAccessException, InvocationTargetException {
+        
+        if( ! declaringClass.isInstance(target) ||
+            (value==null ? primitive : !boxedType.isInstance(value)) ) {
+            /*
+             * Let reflection perform widening conversions or report the
+             * error.
+             */
+            super.set(target,value);
+            return;
+        }
+        
+        try {
+            setter.invokeExact(target,value);
+        }
+        catch( Throwable t ) {
+            throw new InvocationTargetException(t);
+        }
+    }
+    
+    @Override
+    public Object get( Object target )
+    throws
+        IllegalAccessException, InvocationTargetException,
+        UnsupportedOperationException {
+        
+        resolveGetters();
+        if( getter==null || ! declaringClass.isInstance(target) ) {
+            return super.get(target);
+        }
+        
+        try {
+            return (Object) getter.invokeExact(target);
+        }
+        catch( Throwable t ) {
+            throw new InvocationTargetException(t);
+        }
+    }
+    
+    @Override
+    public void setInt( Object target, int value )
+    throws IllegalAccessException, InvocationTargetException {
+        
+        if( intSetter==null || ! declaringClass.isInstance(target) ) {
+            super.setInt(target,value);
+            return;
+        }
+        try {
+            intSetter.invokeExact(target,value);
+        }
+        catch( Throwable t ) {
+            throw new InvocationTargetException(t);
+        }
+    }
+    
+    @Override
+    public void setLong( Object target, long value )
+    throws IllegalAccessException, InvocationTargetException {
+        
+        if( longSetter==null || ! declaringClass.isInstance(target) ) {
+            super.setLong(target,value);
+            return;
+        }
+        try {
+            longSetter.invokeExact(target,value);
+        }
+        catch( Throwable t ) {
+            throw new InvocationTargetException(t);
+        }
+    }
+    
+    @Override
+    public void setDouble( Object target, double value )
+    throws IllegalAccessException, InvocationTargetException {
+        
+        if( doubleSetter==null || ! declaringClass.isInstance(target) ) {
+            super.setDouble(target,value);
+            return;
+        }
+        try {
+            doubleSetter.invokeExact(target,value);
+        }
+        catch( Throwable t ) {
+            throw new InvocationTargetException(t);
+        }
+    }
+    
+    @Override
+    public int getInt( Object target )
+    throws IllegalAccessException, InvocationTargetException {
+        
+        resolveGetters();
+        if( intGetter==null || ! declaringClass.isInstance(target) ) {
+            return super.getInt(target);
+        }
+        try {
+            return (int) intGetter.invokeExact(target);
+        }
+        catch( Throwable t ) {
+            throw new InvocationTargetException(t);
+        }
+    }
+    
+    @Override
+    public long getLong( Object target )
+    throws IllegalAccessException, InvocationTargetException {
+        
+        resolveGetters();
+        if( longGetter==null || ! declaringClass.isInstance(target) ) {
+            return super.getLong(target);
+        }
+        try {
+            return (long) longGetter.invokeExact(target);
+        }
+        catch( Throwable t ) {
+            throw new InvocationTargetException(t);
+        }
+    }
+    
+    @Override
+    public double getDouble( Object target )
+    throws IllegalAccessException, InvocationTargetException {
+        
+        resolveGetters();
+        if( doubleGetter==null || ! declaringClass.isInstance(target) ) {
+            return super.getDouble(target);
+        }
+        try {
+            return (double) doubleGetter.invokeExact(target);
+        }
+        catch( Throwable t ) {
+            throw new InvocationTargetException(t);
+        }
+    }
+}
@@ -42,11 +42,27 @@ extends InjectionPointImpl<A> {
     private Method setter;
     private Method getter;
     
+    /** <code>true</code> once the getter method, if any, is known. */
+    private volatile boolean getterResolved;
+    
     /**
      * @throws IllegalArgumentException
      *      if the specified argument is not a setter method
      */
     public InjectionPointMethodImpl( Method setter, A annot )
+    throws IllegalArgumentException {
+        this(setter,annot,false);
+    }
+    
+    /**
+     * @param lookupGetter
+     *      if <code>true</code>, the getter method associated with the setter
+     *      is looked up with {@link MethodHelper#getGetterForSetter(Method)}
+     *      when it is first needed. Otherwise, the value cannot be retrieved
+     * @throws IllegalArgumentException
+     *      if the specified argument is not a setter method
+     */
+    public InjectionPointMethodImpl( Method setter, A annot, boolean lookupGetter )
     throws IllegalArgumentException {
         
         super(annot);
@@ -54,6 +70,7 @@ extends InjectionPointImpl<A> {
         SetterMethodFilter.checkSetterMethod(setter);
         this.setter = setter;
         setter.setAccessible(true);  // Enable access to private methods
+        getterResolved = ! lookupGetter;
     }
     
     /**
@@ -70,6 +87,7 @@ extends InjectionPointImpl<A> {
         this.getter = getter;
         setter.setAccessible(true);  // Enable access to private methods
         getter.setAccessible(true);  // Enable access to private methods
+        getterResolved = true;
     }
     
     public void set( Object target, Object value )
@@ -82,6 +100,7 @@ extends InjectionPointImpl<A> {
         IllegalAccessException, InvocationTargetException,
         UnsupportedOperationException {
         
+        Method getter = getGetterMethod();
         if( getter == null ) {
             final String msg = "Cannot get the value with a setter method";
             throw new UnsupportedOperationException(msg);
@@ -91,7 +110,24 @@ extends InjectionPointImpl<A> {
         return value;
     }
     
+    /**
+     * Return the getter method or <code>null</code>. The getter method is
+     * looked up when this method is first called.
+     */
     public Method getGetterMethod() {
+        if( ! getterResolved ) {
+            synchronized(this) {
+                if( ! getterResolved ) {
+                    try {
+                        Method getter = MethodHelper.getGetterForSetter(setter);
+                        getter.setAccessible(true);
+                        this.getter = getter;
+                    }
+                    catch (NoSuchMethodException e) {}
+                    getterResolved = true;
+                }
+            }
+        }
         return getter;
     }
 
@@ -0,0 +1,371 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.ipf;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import commons.lang.annotation.AnnotationHelper;
+import commons.lang.reflect.AnnotationMatcher;
+import commons.lang.reflect.SetterMethodFilter;
+
+/**
+ * This class holds the injection points of a class for a set of annotation
+ * types, once overridden injection points have been discarded. Tables are
+ * computed once per class and set of annotation type names, and cached.
+ * Resolution is incremental: the members of a class associated with injection
+ * points are derived from the cached ones of its superclass and from the
+ * members declared by the class, so that resolving a class hierarchy only
+ * introspects each class once.
+ *
+ * <p>
+ * The cache is a {@link ClassValue}: tables are attached to their class and
+ * do not prevent the class and its class loader from being unloaded.
+ * </p>
+ *
+ * <p>
+ * When a table has been generated at compile time for the class and the
+ * annotation type names (see {@link GeneratedInjectionPoints}), it is used
+ * instead of introspecting the class.
+ * </p>
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+class InjectionPointTable {
+
+    /** The tables of a class indexed by annotation type names. */
+    private static final
+    ClassValue<ConcurrentMap<List<String>,InjectionPointTable>> tables =
+        new ClassValue<ConcurrentMap<List<String>,InjectionPointTable>>() {
+            @Override
+            protected ConcurrentMap<List<String>,InjectionPointTable>
+            computeValue( Class<?> type ) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    /**
+     * Return the table of the injection points of the specified class for the
+     * specified annotation type names.
+     */
+    static InjectionPointTable get( Class<?> cl, String... annotClassNames ) {
+
+        ConcurrentMap<List<String>,InjectionPointTable> map = tables.get(cl);
+        List<String> key = Arrays.asList(annotClassNames);
+        InjectionPointTable table = map.get(key);
+        if( table == null ) {
+            String[] names = annotClassNames.clone();
+            table = getGeneratedTable(cl,names);
+            if( table == null ) {
+                table = new InjectionPointTable(getMembers(cl,names));
+            }
+            InjectionPointTable other =
+                map.putIfAbsent(Arrays.asList(names),table);
+            if( other != null ) {
+                table = other;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * The members resolved for a class indexed by annotation type names. They
+     * are computed incrementally from the members resolved for the
+     * superclass.
+     */
+    private static final
+    ClassValue<ConcurrentMap<List<String>,Members>> members =
+        new ClassValue<ConcurrentMap<List<String>,Members>>() {
+            @Override
+            protected ConcurrentMap<List<String>,Members>
+            computeValue( Class<?> type ) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    /**
+     * The injection points indexed by name, setter methods first, then fields,
+     * from the most derived class to the least derived one.
+     */
+    private Map<String,InjectionPoint<Annotation>> points;
+
+    /**
+     * The names associated with several injection points, none of which
+     * overrides the other ones.
+     */
+    private Set<String> duplicates;
+
+    /**
+     * Build the table from the members, overridden ones excluded, of a class.
+     * When several members share the same injection point name, the first one
+     * is retained and the name is recorded as a duplicate.
+     */
+    private InjectionPointTable( Members members ) {
+
+        Map<String,InjectionPoint<Annotation>> points = new LinkedHashMap<>();
+        Set<String> duplicates = new HashSet<>();
+        for (List<Member> list : Arrays.asList(members.setters,members.fields)) {
+            for (Member member : list) {
+                if( points.containsKey(member.name) ) {
+                    duplicates.add(member.name);
+                }
+                else {
+                    points.put(member.name,member.ip);
+                }
+            }
+        }
+
+        this.points = Collections.unmodifiableMap(points);
+        this.duplicates = duplicates;
+    }
+
+    /**
+     * Wrap injection points generated at compile time. Generated tables do not
+     * contain duplicates.
+     */
+    private InjectionPointTable( Map<String,InjectionPoint<Annotation>> points ) {
+        this.points = Collections.unmodifiableMap(points);
+        this.duplicates = Collections.emptySet();
+    }
+
+    /**
+     * Return the injection points indexed by name.
+     */
+    Map<String,InjectionPoint<Annotation>> getInjectionPoints() {
+        return points;
+    }
+
+    /**
+     * Return the injection point associated with the specified name or
+     * <code>null</code>.
+     */
+    InjectionPoint<Annotation> get( String name ) {
+        return points.get(name);
+    }
+
+    /**
+     * Return <code>true</code> if several injection points, none of which
+     * overrides the other ones, are associated with the specified name.
+     */
+    boolean isDuplicate( String name ) {
+        return duplicates.contains(name);
+    }
+
+
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+
+    /**
+     * Return the table generated at compile time for the specified class and
+     * annotation type names, or <code>null</code> if none is available.
+     */
+    private static InjectionPointTable getGeneratedTable(
+        Class<?> cl, String[] annotClassNames ) {
+
+        String name = cl.getName() + GeneratedInjectionPoints.SUFFIX;
+        Map<String,InjectionPoint<Annotation>> points;
+        try {
+            Class<?> gen = Class.forName(name,true,cl.getClassLoader());
+            if( ! GeneratedInjectionPoints.class.isAssignableFrom(gen) ) {
+                return null;
+            }
+            GeneratedInjectionPoints gips =
+                (GeneratedInjectionPoints)
+                gen.getDeclaredConstructor().newInstance();
+            points = gips.getInjectionPoints(annotClassNames);
+        }
+        catch( ReflectiveOperationException | LinkageError e ) {
+            // No usable generated table, fall back on introspection
+            return null;
+        }
+        return points==null ? null : new InjectionPointTable(points);
+    }
+
+    /**
+     * A setter method or a field associated with an injection point.
+     */
+    private static class Member {
+
+        /** The key identifying the member, see {@link #getKey}. */
+        List<Object> key;
+        String name;
+        InjectionPoint<Annotation> ip;
+    }
+
+    /**
+     * The members of a class and of its superclasses associated with
+     * injection points, overridden ones excluded, from the most derived class
+     * to the least derived one.
+     */
+    private static class Members {
+
+        static final Members EMPTY =
+            new Members(Collections.emptyList(),Collections.emptyList());
+
+        List<Member> setters;
+        List<Member> fields;
+
+        Members( List<Member> setters, List<Member> fields ) {
+            this.setters = setters;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * Return the members of the specified class associated with injection
+     * points. The members are computed from the ones of the superclass, which
+     * are cached, and from the members declared by the class. Members of the
+     * superclass whose key is the one of a declared member are overridden and
+     * discarded. Two members with the same injection point name but different
+     * keys do not override each other.
+     */
+    private static Members getMembers( Class<?> cl, String[] annotClassNames ) {
+
+        if( cl==null || cl.equals(Object.class) ) {
+            return Members.EMPTY;
+        }
+
+        ConcurrentMap<List<String>,Members> map = members.get(cl);
+        List<String> mapkey = Arrays.asList(annotClassNames);
+        Members result = map.get(mapkey);
+        if( result != null ) {
+            return result;
+        }
+
+        Members sup = getMembers(cl.getSuperclass(),annotClassNames);
+
+        AnnotationMatcher matcher = new AnnotationMatcher(annotClassNames);
+        Set<List<Object>> keys = new HashSet<>();
+        List<Member> setters = new ArrayList<>();
+        for (Method method : cl.getDeclaredMethods()) {
+            if( SetterMethodFilter.isSetterMethod(method) ) {
+                addMember(setters,keys,method,matcher);
+            }
+        }
+        List<Member> fields = new ArrayList<>();
+        for (Field field : cl.getDeclaredFields()) {
+            addMember(fields,keys,field,matcher);
+        }
+
+        if( setters.isEmpty() && fields.isEmpty() ) {
+            // Nothing declared, nothing overridden
+            result = sup;
+        }
+        else {
+            for (Member member : sup.setters) {
+                if( ! keys.contains(member.key) ) {
+                    setters.add(member);
+                }
+            }
+            for (Member member : sup.fields) {
+                if( ! keys.contains(member.key) ) {
+                    fields.add(member);
+                }
+            }
+            result = new Members(setters,fields);
+        }
+
+        Members other = map.putIfAbsent(mapkey,result);
+        return other==null ? result : other;
+    }
+
+    /**
+     * Add the specified declared element to the specified list if it is
+     * associated with an injection point.
+     */
+    private static void addMember(
+        List<Member> list, Set<List<Object>> keys, AccessibleObject ao,
+        AnnotationMatcher matcher ) {
+
+        Annotation annot = matcher.match(ao);
+        if( annot == null ) {
+            return;
+        }
+
+        Member member = new Member();
+        member.name = getInjectionPointName(ao,annot);
+        member.key = getKey(member.name,ao);
+        member.ip = InjectionPointImpl.getInjectionPoint(ao,annot);
+        keys.add(member.key);
+        list.add(member);
+    }
+
+    /**
+     * Return the key identifying the specified element for the specified
+     * injection point name: the name of a field, or the name and the erased
+     * parameter types of a method.
+     */
+    private static List<Object> getKey( String name, AccessibleObject ao ) {
+        List<Object> key = new ArrayList<>(4);
+        key.add(name);
+        if( ao instanceof Method ) {
+            Method method = (Method) ao;
+            key.add(Method.class);
+            key.add(method.getName());
+            key.addAll(Arrays.asList(method.getParameterTypes()));
+        }
+        else {
+            key.add(Field.class);
+            key.add(((Field)ao).getName());
+        }
+        return key;
+    }
+
+    /**
+     * Return the name of the injection point associated with the specified
+     * element (setter method or field.) Retrieve the name from the name
+     * parameter of the annotation. If missing, infer the name from the setter
+     * method or the field.
+     */
+    private static String getInjectionPointName(
+        AccessibleObject ao, Annotation annot ) {
+
+        String name = AnnotationHelper.getAnnotationParamValue(annot,"name");
+        if( name==null || name.length() == 0 ) {
+            if( ao instanceof Method ) {
+                Method method = (Method) ao;
+                name = SetterMethodFilter.getSetterPropertyName(method);
+            }
+            else {
+                Field field = (Field) ao;
+                name = field.getName();
+            }
+        }
+
+        return name;
+    }
+}
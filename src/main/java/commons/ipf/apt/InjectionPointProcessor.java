@@ -0,0 +1,726 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.ipf.apt;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import commons.ipf.GeneratedInjectionPoints;
+
+/**
+ * This annotation processor generates, for each compiled class containing
+ * injection points, a table of these injection points with direct accessors
+ * to fields and setter methods. The table generated for a class named
+ * <code>C</code> is named <code>C$$InjectionPoints</code> and extends {@link
+ * GeneratedInjectionPoints}. At runtime, {@link
+ * commons.ipf.InjectionPointHashMap} uses generated tables when they exist,
+ * and falls back on introspection otherwise.
+ * 
+ * <p>
+ * The annotation types are configured with the {@value #OPTION} option. The
+ * value of the option is a list of groups separated by semicolons. Each group
+ * is a list of annotation type names separated by commas and corresponds to
+ * the annotation type names of an {@link commons.ipf.InjectionPointHashMap}
+ * or of a {@link commons.ipf.CompositeInjectionPointHashMap}, in the same
+ * order. For example:
+ * <code>-Acommons.ipf.annotations=a.Property;a.Reference;a.Property,a.Reference</code>.
+ * </p>
+ * 
+ * <p>
+ * The processor is not registered as a service and must be explicitly
+ * enabled, e.g. with the <code>-processor</code> option of javac. No table is
+ * generated for a group when an injection point is not accessible from the
+ * package of the class (private member, member of a superclass declared in
+ * another package, etc.), when an injection point is a final field, or when
+ * several injection points share the same name. Introspection is then used
+ * for this group at runtime.
+ * </p>
+ * 
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(InjectionPointProcessor.OPTION)
+public class InjectionPointProcessor extends AbstractProcessor {
+
+    /** The name of the option listing the annotation type names. */
+    public static final String OPTION = "commons.ipf.annotations";
+    
+    /** The primitive types of the accessors of {@link commons.ipf.InjectionPoint}. */
+    private static final TypeKind[] PRIMITIVE_ACCESSORS =
+        { TypeKind.INT, TypeKind.LONG, TypeKind.DOUBLE };
+    
+    /** The configured groups of annotation type names. */
+    private List<String[]> groups = new ArrayList<>();
+    
+    /** The binary names of the classes processed so far. */
+    private Set<String> processed = new HashSet<>();
+    
+    private Elements elements;
+    private Types types;
+    
+    @Override
+    public synchronized void init( ProcessingEnvironment processingEnv ) {
+        
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        
+        String option = processingEnv.getOptions().get(OPTION);
+        if( option != null ) {
+            for (String group : option.split(";")) {
+                String[] names = group.trim().split("\\s*,\\s*");
+                if( names[0].length() != 0 ) {
+                    groups.add(names);
+                }
+            }
+        }
+    }
+    
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+    
+    @Override
+    public boolean process(
+        Set<? extends TypeElement> annotations, RoundEnvironment roundEnv ) {
+        
+        if( ! groups.isEmpty() ) {
+            for (TypeElement type :
+                 ElementFilter.typesIn(roundEnv.getRootElements())) {
+                process(type);
+            }
+        }
+        
+        // Annotations are not claimed, other processors may use them
+        return false;
+    }
+    
+    
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+    
+    /**
+     * An injection point: a field, or a setter method with an optional getter
+     * method.
+     */
+    private static class Entry {
+        String name;
+        Element member;
+        ExecutableElement getter;
+        TypeMirror type;
+        String annotClassName;
+    }
+    
+    /**
+     * Generate the table of the specified class and of its member classes.
+     */
+    private void process( TypeElement type ) {
+        
+        for (TypeElement member :
+             ElementFilter.typesIn(type.getEnclosedElements())) {
+            process(member);
+        }
+        
+        PackageElement pkg = elements.getPackageOf(type);
+        String binaryName = elements.getBinaryName(type).toString();
+        if( type.getKind() != ElementKind.CLASS ||
+            ! isAccessible(type,pkg) || ! processed.add(binaryName) ) {
+            return;
+        }
+        
+        Map<String[],Map<String,Entry>> tables = new LinkedHashMap<>();
+        boolean empty = true;
+        for (String[] group : groups) {
+            Map<String,Entry> table = getInjectionPoints(type,pkg,group);
+            if( table != null ) {
+                tables.put(group,table);
+                empty &= table.isEmpty();
+            }
+        }
+        
+        // Classes without injection points are left to introspection
+        if( ! empty ) {
+            generate(type,pkg,binaryName,tables);
+        }
+    }
+    
+    /**
+     * Resolve the injection points of the specified class for the specified
+     * annotation type names as {@link commons.ipf.InjectionPointHashMap} does
+     * at runtime. Return <code>null</code> if the table cannot be generated.
+     */
+    private Map<String,Entry> getInjectionPoints(
+        TypeElement type, PackageElement pkg, String[] annotClassNames ) {
+        
+        // Setter methods, then fields, from the most derived class
+        List<Element> members = new ArrayList<>();
+        for ( TypeElement t=type ; t!=null ; t=getSuperclass(t) ) {
+            for (ExecutableElement method :
+                 ElementFilter.methodsIn(t.getEnclosedElements())) {
+                if( isSetterMethod(method) ) {
+                    members.add(method);
+                }
+            }
+        }
+        for ( TypeElement t=type ; t!=null ; t=getSuperclass(t) ) {
+            members.addAll(ElementFilter.fieldsIn(t.getEnclosedElements()));
+        }
+        
+        Map<String,Entry> table = new LinkedHashMap<>();
+        Set<List<String>> keys = new HashSet<>();
+        for (Element member : members) {
+            
+            AnnotationMirror annot = getAnnotation(member,annotClassNames);
+            if( annot == null ) {
+                continue;
+            }
+            String name = getInjectionPointName(member,annot);
+            if( name == null ) {
+                return null;
+            }
+            if( ! keys.add(getKey(name,member)) ) {
+                // Overridden by an element of a subclass
+                continue;
+            }
+            if( table.containsKey(name) ) {
+                // Duplicate injection points are reported at runtime
+                return null;
+            }
+            
+            Entry entry = new Entry();
+            entry.name = name;
+            entry.member = member;
+            entry.annotClassName = getBinaryName(annot);
+            if( member instanceof ExecutableElement ) {
+                ExecutableElement setter = (ExecutableElement) member;
+                entry.type = types.erasure(
+                    setter.getParameters().get(0).asType());
+                entry.getter = getGetterMethod(setter);
+                if( entry.getter!=null && ! isAccessible(entry.getter,pkg) ) {
+                    return null;
+                }
+            }
+            else {
+                if( member.getModifiers().contains(Modifier.FINAL) ) {
+                    return null;
+                }
+                entry.type = types.erasure(member.asType());
+            }
+            if( ! isAccessible(member,pkg) || ! isAccessible(entry.type,pkg) ) {
+                return null;
+            }
+            table.put(name,entry);
+        }
+        
+        return table;
+    }
+    
+    /**
+     * Write the source code of the table of the specified class.
+     */
+    private void generate(
+        TypeElement type, PackageElement pkg, String binaryName,
+        Map<String[],Map<String,Entry>> tables ) {
+        
+        String simpleName =
+            binaryName.substring(binaryName.lastIndexOf('.')+1) +
+            GeneratedInjectionPoints.SUFFIX;
+        String qualifiedName =
+            pkg.isUnnamed() ?
+            simpleName : pkg.getQualifiedName()+"."+simpleName;
+        
+        try {
+            JavaFileObject jfo =
+                processingEnv.getFiler().createSourceFile(qualifiedName,type);
+            try( PrintWriter pw = new PrintWriter(jfo.openWriter()) ) {
+                
+                if( ! pkg.isUnnamed() ) {
+                    pw.println("package "+pkg.getQualifiedName()+";");
+                    pw.println();
+                }
+                pw.println("/**");
+                pw.println(" * Injection points of "+type.getQualifiedName()+".");
+                pw.println(" * Generated by "+getClass().getName()+".");
+                pw.println(" */");
+                pw.println("@SuppressWarnings({\"rawtypes\",\"unchecked\"})");
+                pw.println("public final class "+simpleName);
+                pw.println("extends commons.ipf.GeneratedInjectionPoints {");
+                pw.println();
+                pw.println("    public "+simpleName+"() {");
+                pw.println(
+                    "        java.util.Map<String,commons.ipf.InjectionPoint"+
+                    "<java.lang.annotation.Annotation>> table;");
+                for (Map.Entry<String[],Map<String,Entry>> table :
+                     tables.entrySet()) {
+                    StringBuilder sb = new StringBuilder();
+                    for (String annotClassName : table.getKey()) {
+                        if( sb.length() != 0 ) {
+                            sb.append(',');
+                        }
+                        sb.append(elements.getConstantExpression(annotClassName));
+                    }
+                    pw.println("        table = newTable("+sb+");");
+                    for (Entry entry : table.getValue().values()) {
+                        generate(pw,entry);
+                    }
+                }
+                pw.println("    }");
+                pw.println("}");
+            }
+        }
+        catch( IOException ioe ) {
+            processingEnv.getMessager().printMessage(
+                Diagnostic.Kind.WARNING,
+                "Cannot generate "+qualifiedName+": "+ioe.getMessage(),type);
+        }
+    }
+    
+    /**
+     * Write the statement registering the specified injection point.
+     */
+    private void generate( PrintWriter pw, Entry entry ) {
+        
+        Element member = entry.member;
+        boolean isField = member instanceof VariableElement;
+        TypeElement declaring = (TypeElement) member.getEnclosingElement();
+        String declaringName = declaring.getQualifiedName().toString();
+        String receiver =
+            member.getModifiers().contains(Modifier.STATIC) ?
+            declaringName : "(("+declaringName+")target)";
+        String typeName = getTypeName(entry.type);
+        String valueType =
+            entry.type.getKind().isPrimitive() ?
+            types.boxedClass((PrimitiveType)entry.type).getQualifiedName().toString() :
+            typeName;
+        String memberName = member.getSimpleName().toString();
+        
+        pw.println(
+            "        table.put("+elements.getConstantExpression(entry.name)+
+            ", new commons.ipf.GeneratedInjectionPoint(");
+        pw.println(
+            "            "+declaringName+".class,"+
+            elements.getConstantExpression(memberName)+","+isField+","+
+            typeName+".class,"+
+            elements.getConstantExpression(entry.annotClassName)+","+
+            (isField || entry.getter!=null)+") {");
+        
+        if( isField ) {
+            pw.println("            public void set( Object target, Object value ) {");
+            generateCheck(pw,entry,valueType);
+            pw.println("                "+receiver+"."+memberName+" = ("+valueType+") value;");
+            pw.println("            }");
+            pw.println("            public Object get( Object target ) {");
+            generateTargetCheck(pw,entry,member);
+            pw.println("                return "+receiver+"."+memberName+";");
+            pw.println("            }");
+        }
+        else {
+            pw.println("            public void set( Object target, Object value )");
+            pw.println("            throws java.lang.reflect.InvocationTargetException {");
+            generateCheck(pw,entry,valueType);
+            pw.println("                try {");
+            pw.println("                    "+receiver+"."+memberName+"(("+valueType+") value);");
+            pw.println("                }");
+            pw.println("                catch( Throwable t ) {");
+            pw.println("                    throw new java.lang.reflect.InvocationTargetException(t);");
+            pw.println("                }");
+            pw.println("            }");
+            if( entry.getter != null ) {
+                pw.println("            public Object get( Object target )");
+                pw.println("            throws java.lang.reflect.InvocationTargetException {");
+                generateTargetCheck(pw,entry,entry.getter);
+                pw.println("                try {");
+                pw.println("                    return "+getGetterReceiver(entry)+"."+entry.getter.getSimpleName()+"();");
+                pw.println("                }");
+                pw.println("                catch( Throwable t ) {");
+                pw.println("                    throw new java.lang.reflect.InvocationTargetException(t);");
+                pw.println("                }");
+                pw.println("            }");
+            }
+        }
+        if( entry.type.getKind().isPrimitive() ) {
+            generatePrimitiveAccessors(pw,entry,receiver);
+        }
+        pw.println("        });");
+    }
+    
+    /**
+     * Write the statement rejecting, before the field is assigned or the
+     * setter is invoked, a target which is not an instance of the declaring
+     * class and a value which is not an instance of the specified type, or is
+     * <code>null</code> for a primitive injection point. The value is not
+     * checked if the type is <code>null</code>. Both are reported with an
+     * {@link IllegalArgumentException} as with reflection, so that only the
+     * exceptions thrown by the setter are wrapped.
+     */
+    private void generateCheck(
+        PrintWriter pw, Entry entry, String valueType ) {
+        
+        Element member = entry.member;
+        List<String> conds = new ArrayList<>();
+        if( ! member.getModifiers().contains(Modifier.STATIC) ) {
+            TypeElement declaring = (TypeElement) member.getEnclosingElement();
+            conds.add("!(target instanceof "+declaring.getQualifiedName()+")");
+        }
+        if( valueType != null ) {
+            String cond = "!(value instanceof "+valueType+")";
+            conds.add(
+                entry.type.getKind().isPrimitive() ?
+                cond : "(value!=null && "+cond+")" );
+        }
+        if( conds.isEmpty() ) {
+            return;
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        for (String cond : conds) {
+            if( sb.length() != 0 ) {
+                sb.append(" || ");
+            }
+            sb.append(cond);
+        }
+        pw.println("                if( "+sb+" ) {");
+        pw.println("                    throw illegalArgument(target,value);");
+        pw.println("                }");
+    }
+    
+    /**
+     * Write the statement rejecting, before the field is read or the getter
+     * method is invoked, a target which is not an instance of the declaring
+     * class. The target is not checked if the specified accessor, the field or
+     * the getter method, is static.
+     */
+    private void generateTargetCheck(
+        PrintWriter pw, Entry entry, Element accessor ) {
+        
+        if( accessor.getModifiers().contains(Modifier.STATIC) ) {
+            return;
+        }
+        TypeElement declaring = (TypeElement) entry.member.getEnclosingElement();
+        pw.println("                if( !(target instanceof "+declaring.getQualifiedName()+") ) {");
+        pw.println("                    throw illegalArgument(target);");
+        pw.println("                }");
+    }
+    
+    /**
+     * Write the accessors of the specified injection point of a primitive type
+     * which set and get <code>int</code>, <code>long</code> and
+     * <code>double</code> values without boxing. Only the accessors involving
+     * widening conversions are written.
+     */
+    private void generatePrimitiveAccessors(
+        PrintWriter pw, Entry entry, String receiver ) {
+        
+        Element member = entry.member;
+        boolean isField = member instanceof VariableElement;
+        String memberName = member.getSimpleName().toString();
+        String exception =
+            isField ? "" : " throws java.lang.reflect.InvocationTargetException";
+        
+        for (TypeKind kind : PRIMITIVE_ACCESSORS) {
+            
+            TypeMirror t = types.getPrimitiveType(kind);
+            String name = kind.name().charAt(0)+kind.name().substring(1).toLowerCase();
+            String typeName = getTypeName(t);
+            
+            if( types.isAssignable(t,entry.type) ) {
+                pw.println("            @Override");
+                pw.println("            public void set"+name+"( Object target, "+typeName+" value )"+exception+" {");
+                generateCheck(pw,entry,null);
+                if( isField ) {
+                    pw.println("                "+receiver+"."+memberName+" = value;");
+                }
+                else {
+                    pw.println("                try {");
+                    pw.println("                    "+receiver+"."+memberName+"(value);");
+                    pw.println("                }");
+                    pw.println("                catch( Throwable t ) {");
+                    pw.println("                    throw new java.lang.reflect.InvocationTargetException(t);");
+                    pw.println("                }");
+                }
+                pw.println("            }");
+            }
+            
+            if( (isField || entry.getter!=null) &&
+                types.isAssignable(entry.type,t) ) {
+                pw.println("            @Override");
+                pw.println("            public "+typeName+" get"+name+"( Object target )"+exception+" {");
+                generateTargetCheck(pw,entry,isField?member:entry.getter);
+                if( isField ) {
+                    pw.println("                return "+receiver+"."+memberName+";");
+                }
+                else {
+                    pw.println("                try {");
+                    pw.println("                    return "+getGetterReceiver(entry)+"."+entry.getter.getSimpleName()+"();");
+                    pw.println("                }");
+                    pw.println("                catch( Throwable t ) {");
+                    pw.println("                    throw new java.lang.reflect.InvocationTargetException(t);");
+                    pw.println("                }");
+                }
+                pw.println("            }");
+            }
+        }
+    }
+    
+    /**
+     * Return the expression on which the getter method of the specified
+     * injection point is invoked in generated code.
+     */
+    private static String getGetterReceiver( Entry entry ) {
+        if( entry.getter.getModifiers().contains(Modifier.STATIC) ) {
+            TypeElement te = (TypeElement) entry.getter.getEnclosingElement();
+            return te.getQualifiedName().toString();
+        }
+        TypeElement declaring = (TypeElement) entry.member.getEnclosingElement();
+        return "(("+declaring.getQualifiedName()+")target)";
+    }
+    
+    /**
+     * Return the first annotation of the specified element whose type name is
+     * one of the specified names, in the order of these names. Only runtime
+     * annotations are considered, as for reflection.
+     */
+    private AnnotationMirror getAnnotation(
+        Element element, String[] annotClassNames ) {
+        
+        List<? extends AnnotationMirror> annots =
+            element.getAnnotationMirrors();
+        for (String annotClassName : annotClassNames) {
+            for (AnnotationMirror annot : annots) {
+                if( getBinaryName(annot).equals(annotClassName) ) {
+                    TypeElement at =
+                        (TypeElement) annot.getAnnotationType().asElement();
+                    Retention retention = at.getAnnotation(Retention.class);
+                    if( retention!=null &&
+                        retention.value()==RetentionPolicy.RUNTIME ) {
+                        return annot;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+    
+    private String getBinaryName( AnnotationMirror annot ) {
+        TypeElement at = (TypeElement) annot.getAnnotationType().asElement();
+        return elements.getBinaryName(at).toString();
+    }
+    
+    /**
+     * Return the name of the injection point associated with the specified
+     * element: the name parameter of the annotation or, if missing, the name
+     * inferred from the setter method or the field. Return <code>null</code>
+     * if the name cannot be determined at compile time.
+     */
+    private String getInjectionPointName(
+        Element element, AnnotationMirror annot ) {
+        
+        for (Map.Entry<? extends ExecutableElement,? extends AnnotationValue> e :
+             elements.getElementValuesWithDefaults(annot).entrySet()) {
+            if( e.getKey().getSimpleName().contentEquals("name") ) {
+                Object value = e.getValue().getValue();
+                if( ! (value instanceof String) ) {
+                    return null;
+                }
+                if( ((String)value).length() != 0 ) {
+                    return (String) value;
+                }
+            }
+        }
+        
+        String name = element.getSimpleName().toString();
+        if( element instanceof ExecutableElement ) {
+            name = getPropertyName(name);
+        }
+        return name;
+    }
+    
+    /**
+     * Return the key identifying the specified element for the specified
+     * injection point name: the name of a field, or the name and the erased
+     * parameter types of a method.
+     */
+    private List<String> getKey( String name, Element element ) {
+        List<String> key = new ArrayList<>();
+        key.add(name);
+        key.add(element.getKind().name());
+        key.add(element.getSimpleName().toString());
+        if( element instanceof ExecutableElement ) {
+            for (VariableElement param :
+                 ((ExecutableElement)element).getParameters()) {
+                key.add(getTypeName(types.erasure(param.asType())));
+            }
+        }
+        return key;
+    }
+    
+    /**
+     * Return the getter method associated with the specified setter method
+     * as {@link commons.lang.reflect.MethodHelper#getGetterForSetter} does, or
+     * <code>null</code>.
+     */
+    private ExecutableElement getGetterMethod( ExecutableElement setter ) {
+        
+        TypeElement declaring = (TypeElement) setter.getEnclosingElement();
+        List<ExecutableElement> candidates = new ArrayList<>();
+        candidates.addAll(ElementFilter.methodsIn(declaring.getEnclosedElements()));
+        for (ExecutableElement method :
+             ElementFilter.methodsIn(elements.getAllMembers(declaring))) {
+            if( method.getModifiers().contains(Modifier.PUBLIC) ) {
+                candidates.add(method);
+            }
+        }
+        
+        String propName = getPropertyName(setter.getSimpleName().toString());
+        TypeMirror propType = setter.getParameters().get(0).asType();
+        for (ExecutableElement method : candidates) {
+            String name = method.getSimpleName().toString();
+            if( name.startsWith("get") && name.length() > 3 &&
+                method.getParameters().isEmpty() &&
+                getPropertyName(name).equals(propName) &&
+                types.isSameType(
+                    types.erasure(method.getReturnType()),
+                    types.erasure(propType)) ) {
+                return method;
+            }
+        }
+        return null;
+    }
+    
+    private static boolean isSetterMethod( ExecutableElement method ) {
+        String name = method.getSimpleName().toString();
+        return
+            name.startsWith("set") && name.length() > 3 &&
+            method.getReturnType().getKind() == TypeKind.VOID &&
+            method.getParameters().size() == 1;
+    }
+    
+    /**
+     * Return the name of the property associated with the specified setter or
+     * getter method name.
+     */
+    private static String getPropertyName( String methodName ) {
+        String name = methodName.substring(3);
+        return name.substring(0,1).toLowerCase() + name.substring(1);
+    }
+    
+    private TypeElement getSuperclass( TypeElement type ) {
+        TypeMirror sup = type.getSuperclass();
+        if( sup.getKind() != TypeKind.DECLARED ) {
+            return null;
+        }
+        TypeElement supel = (TypeElement) ((DeclaredType)sup).asElement();
+        if( supel.getQualifiedName().contentEquals(Object.class.getName()) ) {
+            return null;
+        }
+        return supel;
+    }
+    
+    /**
+     * Return <code>true</code> if the specified type or member can be
+     * accessed from code located in the specified package.
+     */
+    private boolean isAccessible( Element element, PackageElement pkg ) {
+        
+        Set<Modifier> modifiers = element.getModifiers();
+        if( modifiers.contains(Modifier.PRIVATE) ) {
+            return false;
+        }
+        if( ! modifiers.contains(Modifier.PUBLIC) &&
+            ! elements.getPackageOf(element).equals(pkg) ) {
+            return false;
+        }
+        
+        Element enclosing = element.getEnclosingElement();
+        if( enclosing.getKind() == ElementKind.PACKAGE ) {
+            return true;
+        }
+        return
+            (enclosing.getKind().isClass() || enclosing.getKind().isInterface()) &&
+            isAccessible(enclosing,pkg);
+    }
+    
+    private boolean isAccessible( TypeMirror type, PackageElement pkg ) {
+        switch( type.getKind() ) {
+        case ARRAY:
+            return isAccessible(((ArrayType)type).getComponentType(),pkg);
+        case DECLARED:
+            return isAccessible(((DeclaredType)type).asElement(),pkg);
+        default:
+            return type.getKind().isPrimitive();
+        }
+    }
+    
+    /**
+     * Return the name of the specified erased type as it appears in source
+     * code.
+     */
+    private String getTypeName( TypeMirror type ) {
+        switch( type.getKind() ) {
+        case ARRAY:
+            return getTypeName(((ArrayType)type).getComponentType())+"[]";
+        case DECLARED:
+            TypeElement te = (TypeElement) ((DeclaredType)type).asElement();
+            return te.getQualifiedName().toString();
+        default:
+            return type.getKind().name().toLowerCase();
+        }
+    }
+}
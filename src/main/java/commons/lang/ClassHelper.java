@@ -30,6 +30,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.TypeVariable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -39,6 +40,7 @@ import java.util.Set;
 import java.util.function.Predicate;
 
 import commons.lang.reflect.AnnotatedElementFilter;
+import commons.lang.reflect.AnnotationMatcher;
 import commons.lang.reflect.SetterMethodFilter;
 import commons.lang.reflect.UnAnnotatedElementFilter;
 import commons.util.function.Filters;
@@ -79,6 +81,86 @@ public class ClassHelper {
 		    put(void.class,Void.class);
 		}};
 
+	/**
+	 * The fields declared by a class and by its parent classes, except {@link
+	 * java.lang.Object}. The array of a class is computed once from the one of
+	 * its superclass and is never modified. The cached instances are used for
+	 * filtering only and are never returned to callers.
+	 */
+	private final static ClassValue<Field[]> allFields =
+		new ClassValue<Field[]>() {
+			@Override
+			protected Field[] computeValue( Class<?> type ) {
+				if( type.equals(Object.class) ) {
+					return new Field[0];
+				}
+				Field[] declared = type.getDeclaredFields();
+				Class<?> supercl = type.getSuperclass();
+				if( supercl == null ) {
+					return declared;
+				}
+				return concat(declared,allFields.get(supercl));
+			}
+		};
+
+	/**
+	 * The methods declared by a class and by its parent classes, except {@link
+	 * java.lang.Object}. The array of a class is computed once from the one of
+	 * its superclass and is never modified. The cached instances are used for
+	 * filtering only and are never returned to callers.
+	 */
+	private final static ClassValue<Method[]> allMethods =
+		new ClassValue<Method[]>() {
+			@Override
+			protected Method[] computeValue( Class<?> type ) {
+				if( type.equals(Object.class) ) {
+					return new Method[0];
+				}
+				Method[] declared = type.getDeclaredMethods();
+				Class<?> supercl = type.getSuperclass();
+				if( supercl == null ) {
+					return declared;
+				}
+				return concat(declared,allMethods.get(supercl));
+			}
+		};
+
+	/**
+	 * Return a new instance of the specified cached field so that changing its
+	 * state, e.g. its accessible flag, does not affect the cache.
+	 */
+	private static Field copy( Field field ) {
+		try {
+			return field.getDeclaringClass().getDeclaredField(field.getName());
+		}
+		catch( NoSuchFieldException nsfe ) {
+			throw new IllegalStateException(nsfe);
+		}
+	}
+
+	/**
+	 * Return a new instance of the specified cached method so that changing
+	 * its state, e.g. its accessible flag, does not affect the cache.
+	 */
+	private static Method copy( Method method ) {
+		try {
+			return method.getDeclaringClass().getDeclaredMethod(
+				method.getName(),method.getParameterTypes());
+		}
+		catch( NoSuchMethodException nsme ) {
+			throw new IllegalStateException(nsme);
+		}
+	}
+
+	private static <T> T[] concat( T[] first, T[] second ) {
+		if( second.length == 0 ) {
+			return first;
+		}
+		T[] result = Arrays.copyOf(first,first.length+second.length);
+		System.arraycopy(second,0,result,first.length,second.length);
+		return result;
+	}
+
     /**
      * Add to the specified list, all fields declared by the specified class and
      * all fields declared by parent classes, except {@link java.lang.Object},
@@ -160,21 +242,25 @@ public class ClassHelper {
 		Class<?> cl, String... annotClassNames ) {
     	
     	// Setter methods
-    	Method[] methods = getAllMethods(cl);
+    	Method[] methods = allMethods.get(cl);
     	Method[] ms0 = Filters.filter(methods,new SetterMethodFilter());
     	Predicate<AnnotatedElement> filter =
     		new AnnotatedElementFilter(annotClassNames);
     	Method[] ms1 = Filters.filter(ms0,filter);
     	
     	// Fields
-    	Field[] fields = getAllFields(cl);
+    	Field[] fields = allFields.get(cl);
     	Field[] fs0 = Filters.filter(fields,filter);
 
-    	// Result
+    	// Result, with copies of the cached elements
     	AccessibleObject[] aos =
     		new AccessibleObject[ ms1.length + fs0.length ];
-    	System.arraycopy(ms1,0,aos,0,ms1.length);
-    	System.arraycopy(fs0,0,aos,ms1.length,fs0.length);
+    	for ( int i=0 ; i < ms1.length ; i++ ) {
+    		aos[i] = copy(ms1[i]);
+    	}
+    	for ( int i=0 ; i < fs0.length ; i++ ) {
+    		aos[ms1.length+i] = copy(fs0[i]);
+    	}
     	
     	return aos;
     }
@@ -217,7 +303,7 @@ public class ClassHelper {
     public static Map<String,Method> getAllUnAnnotatedSetterMethods(
 		Class<?> cl ) {
         
-    	Method[] methods = getAllMethods(cl);
+    	Method[] methods = allMethods.get(cl);
     	Method[] ms0 = Filters.filter(methods,new SetterMethodFilter());
     	Predicate<AnnotatedElement> filter = new UnAnnotatedElementFilter();
     	Method[] ms1 = Filters.filter(ms0,filter);
@@ -226,7 +312,7 @@ public class ClassHelper {
         Map<String,Method> result = new HashMap<String,Method>();
         for (Method setter : ms1) {
 			String propName = SetterMethodFilter.getSetterPropertyName(setter);
-			result.put(propName,setter);
+			result.put(propName,copy(setter));
 		}
 
         return result;
@@ -272,27 +358,27 @@ public class ClassHelper {
      */
     public static Annotation getAnnotation(
 		Class<?> cl, String... annotClassNames ) {
-
-    	// No annotation on Object.class
-    	if( cl.equals(Object.class) ) {
-    		return null;
-    	}
-
-    	Annotation[] annots = cl.getAnnotations();
-    	for (String annotClassName : annotClassNames) {
-    		for (Annotation annot : annots) {
-				String name = annot.annotationType().getName();
-				if( name.equals(annotClassName) ) {
-					return annot;
-				}
-			}
-		}
     	
-    	// Recurse in the parent class up to java.lang.Object
-    	Class<?> supercl = cl.getSuperclass();
-    	if( supercl!=null && !supercl.equals(Object.class) ) {
-    		Annotation annot = getAnnotation(supercl,annotClassNames);
-    		return annot;
+    	AnnotationMatcher matcher = new AnnotationMatcher(annotClassNames);
+    	return getMatchingAnnotation(cl,matcher);
+    }
+    
+    /**
+     * Return the annotation associated with <code>cl</code> which is matched
+     * by the specified matcher. If no such annotation exists, recurse into the
+     * inheritance hierarchy up to {@link java.lang.Object}. Return
+     * <code>null</code> if no such annotation is found.
+     */
+    public static Annotation getMatchingAnnotation(
+		Class<?> cl, AnnotationMatcher matcher ) {
+    	
+    	// Recurse in the parent classes, no annotation on Object.class
+    	for ( Class<?> c=cl ; c!=null && !c.equals(Object.class) ;
+    		  c=c.getSuperclass() ) {
+    		Annotation annot = matcher.match(c);
+    		if( annot != null ) {
+    			return annot;
+    		}
     	}
     	
     	// No such annotation found
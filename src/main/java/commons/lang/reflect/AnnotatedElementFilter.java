@@ -23,7 +23,6 @@
 
 package commons.lang.reflect;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.util.function.Predicate;
 
@@ -34,22 +33,17 @@ import java.util.function.Predicate;
  */
 public class AnnotatedElementFilter implements Predicate<AnnotatedElement> {
 
-    private String[] annotClassNames;
+    private AnnotationMatcher matcher;
     
     public AnnotatedElementFilter( String... annotClassNames ) {
-        this.annotClassNames = annotClassNames;
+        matcher = new AnnotationMatcher(annotClassNames);
+    }
+    
+    public AnnotatedElementFilter( AnnotationMatcher matcher ) {
+        this.matcher = matcher;
     }
     
     public boolean test( AnnotatedElement value ) {
-        Annotation[] annots = value.getAnnotations();
-        for (String annotClassName : annotClassNames) {
-            for (Annotation annot : annots) {
-                String name = annot.annotationType().getName();
-                if( name.equals(annotClassName) ) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return matcher.matches(value);
     }
 }
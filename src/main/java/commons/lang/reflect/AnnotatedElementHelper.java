@@ -37,7 +37,9 @@ public class AnnotatedElementHelper {
 	/**
 	 * Return the annotation associated with the specified annotated element
 	 * whose type name is one of those contained in the specified varargs.
-	 * Return <code>null</code> if no such annotation is found.
+	 * Return <code>null</code> if no such annotation is found. When the same
+	 * names are used repeatedly, prefer {@link
+	 * #getMatchingAnnotation(AnnotatedElement, AnnotationMatcher)}.
 	 * 
 	 * @param ae               the annotated element
 	 * @param annotClassNames  the varargs of annotation type names
@@ -45,15 +47,38 @@ public class AnnotatedElementHelper {
 	public static Annotation getAnnotation(
 	    AnnotatedElement ae, String... annotClassNames ) {
 	    
-	    Annotation[] annots = ae.getAnnotations();
-	    for (String annotClassName : annotClassNames) {
-	        for (Annotation annot : annots) {
-	            String name = annot.annotationType().getName();
-	            if( name.equals(annotClassName) ) {
-	                return annot;
-	            }
+	    return new AnnotationMatcher(annotClassNames).match(ae);
+	}
+
+	/**
+	 * Return the annotation associated with the specified annotated element
+	 * whose type is one of those contained in the specified varargs. Types
+	 * are compared by identity. Return <code>null</code> if no such
+	 * annotation is found.
+	 * 
+	 * @param ae            the annotated element
+	 * @param annotClasses  the varargs of annotation types
+	 */
+	@SafeVarargs
+	public static Annotation getAnnotationByType(
+	    AnnotatedElement ae, Class<? extends Annotation>... annotClasses ) {
+	    
+	    for (Class<? extends Annotation> annotClass : annotClasses) {
+	        Annotation annot = ae.getAnnotation(annotClass);
+	        if( annot != null ) {
+	            return annot;
 	        }
 	    }
 	    return null;
 	}
+
+	/**
+	 * Return the annotation associated with the specified annotated element
+	 * which is matched by the specified matcher. Return <code>null</code> if
+	 * no such annotation is found.
+	 */
+	public static Annotation getMatchingAnnotation(
+	    AnnotatedElement ae, AnnotationMatcher matcher ) {
+	    return matcher.match(ae);
+	}
 }
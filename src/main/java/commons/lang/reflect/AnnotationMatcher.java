@@ -0,0 +1,199 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.lang.reflect;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class matches the annotations of code elements against a list of
+ * annotation types. The list is indexed once, when the matcher is created, so
+ * that matching an element costs one hash lookup per annotation of the
+ * element, whatever the number of requested types.
+ * 
+ * <p>
+ * Annotation types are designated either by name, in which case annotations
+ * loaded by different class loaders match, or by {@link Class} tokens, see
+ * {@link #ofTypes(Class...)}, which are compared by identity. When an element holds several matching
+ * annotations, the one whose type comes first in the list is returned.
+ * </p>
+ * 
+ * <p>
+ * The annotations of classes, fields, methods and constructors, with the
+ * names of their types, are cached per element. Matchers are immutable and
+ * can be shared between threads.
+ * </p>
+ * 
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class AnnotationMatcher {
+
+    /** The rank of each requested annotation type name. */
+    private Map<String,Integer> nameRanks;
+    
+    /** The rank of each requested annotation type. */
+    private Map<Class<?>,Integer> typeRanks;
+    
+    public AnnotationMatcher( String... annotClassNames ) {
+        nameRanks = new HashMap<>();
+        for ( int i=annotClassNames.length-1 ; i >= 0 ; i-- ) {
+            nameRanks.put(annotClassNames[i],i);
+        }
+    }
+    
+    private AnnotationMatcher( Map<Class<?>,Integer> typeRanks ) {
+        this.typeRanks = typeRanks;
+    }
+    
+    /**
+     * Return a matcher for the specified annotation types, which are compared
+     * by identity.
+     */
+    @SafeVarargs
+    public static AnnotationMatcher ofTypes(
+        Class<? extends Annotation>... annotClasses ) {
+        
+        Map<Class<?>,Integer> typeRanks = new IdentityHashMap<>();
+        for ( int i=annotClasses.length-1 ; i >= 0 ; i-- ) {
+            typeRanks.put(annotClasses[i],i);
+        }
+        return new AnnotationMatcher(typeRanks);
+    }
+    
+    /**
+     * Return the annotation of the specified element whose type comes first
+     * in the list of this matcher, or <code>null</code> if no annotation
+     * matches.
+     */
+    public Annotation match( AnnotatedElement ae ) {
+        
+        ElementAnnotations ea = getElementAnnotations(ae);
+        Annotation result = null;
+        int best = Integer.MAX_VALUE;
+        for ( int i=0 ; i < ea.annots.length ; i++ ) {
+            Integer rank =
+                nameRanks!=null ?
+                nameRanks.get(ea.names[i]) : typeRanks.get(ea.types[i]);
+            if( rank!=null && rank<best ) {
+                if( rank == 0 ) {
+                    return ea.annots[i];
+                }
+                best = rank;
+                result = ea.annots[i];
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Return <code>true</code> if an annotation of the specified element
+     * matches.
+     */
+    public boolean matches( AnnotatedElement ae ) {
+        ElementAnnotations ea = getElementAnnotations(ae);
+        for ( int i=0 ; i < ea.annots.length ; i++ ) {
+            if( nameRanks!=null ?
+                nameRanks.containsKey(ea.names[i]) :
+                typeRanks.containsKey(ea.types[i]) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    
+    // ---------------------------------------------------------------------
+    // Implementation specific
+    // ---------------------------------------------------------------------
+    
+    /**
+     * The annotations of an element with their types and the names of these
+     * types, at the same indexes. Arrays are never modified.
+     */
+    static class ElementAnnotations {
+        
+        final Annotation[] annots;
+        final Class<?>[] types;
+        final String[] names;
+        
+        ElementAnnotations( AnnotatedElement ae ) {
+            annots = ae.getAnnotations();
+            types = new Class<?>[ annots.length ];
+            names = new String[ annots.length ];
+            for ( int i=0 ; i < annots.length ; i++ ) {
+                types[i] = annots[i].annotationType();
+                names[i] = types[i].getName();
+            }
+        }
+    }
+    
+    /**
+     * The annotations of the members of a class, and of the class itself,
+     * indexed by element.
+     */
+    private static final
+    ClassValue<ConcurrentMap<AnnotatedElement,ElementAnnotations>> cache =
+        new ClassValue<ConcurrentMap<AnnotatedElement,ElementAnnotations>>() {
+            @Override
+            protected ConcurrentMap<AnnotatedElement,ElementAnnotations>
+            computeValue( Class<?> type ) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+    
+    /**
+     * Return the annotations of the specified element. They are cached for
+     * classes and members, and retrieved each time for other elements.
+     */
+    static ElementAnnotations getElementAnnotations( AnnotatedElement ae ) {
+        
+        Class<?> cl;
+        if( ae instanceof Class ) {
+            cl = (Class<?>) ae;
+        }
+        else if( ae instanceof Member ) {
+            cl = ((Member)ae).getDeclaringClass();
+        }
+        else {
+            return new ElementAnnotations(ae);
+        }
+        
+        ConcurrentMap<AnnotatedElement,ElementAnnotations> map = cache.get(cl);
+        ElementAnnotations ea = map.get(ae);
+        if( ea == null ) {
+            ea = new ElementAnnotations(ae);
+            ElementAnnotations other = map.putIfAbsent(ae,ea);
+            if( other != null ) {
+                ea = other;
+            }
+        }
+        return ea;
+    }
+}
@@ -27,7 +27,9 @@ import java.lang.reflect.Method;
 import java.lang.reflect.TypeVariable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class provides helper methods for the {@link Method} class.
@@ -61,32 +63,79 @@ public class MethodHelper {
 	}
 
 	/**
-	 * Return the getter method corresponding to the specified setter.
+	 * Return the getter method corresponding to the specified setter. The
+	 * getter methods of each class are indexed once by property name.
 	 * 
 	 * @throws NoSuchMethodException  if the getter does not exist
 	 */
 	public static Method getGetterForSetter( Method setter )
 	throws NoSuchMethodException {
 		
-		Class<?> cl = setter.getDeclaringClass();
+		String name = setter.getName();
+		if( name.length()<=3 || ! SetterMethodFilter.isSetterMethod(setter) ) {
+			throw new NoSuchMethodException();
+		}
+		String propName = SetterMethodFilter.getSetterPropertyName(setter);
+		Class<?> propType = setter.getParameterTypes()[0];
 		
-		// First search in declared methods
-		Method[] methods = cl.getDeclaredMethods();
-		for (Method method : methods) {
-			if( isMatchingSetterGetter(setter,method) ) {
-				return method;
+		/*
+		 * Candidates are the declared methods first, then the public ones,
+		 * of the class declaring the setter.
+		 */
+		Class<?> cl = setter.getDeclaringClass();
+		Method[] methods = getters.get(cl).get(propName);
+		if( methods != null ) {
+			for (Method method : methods) {
+				if( method.getReturnType().equals(propType) ) {
+					return method;
+				}
 			}
 		}
-	
-		// First search in declared methods
-		methods = cl.getMethods();
+		
+		throw new NoSuchMethodException();
+	}
+
+	/**
+	 * The getter methods of a class indexed by property name. For each
+	 * property, the getters declared by the class come first, then the public
+	 * ones.
+	 */
+	private static final ClassValue<Map<String,Method[]>> getters =
+		new ClassValue<Map<String,Method[]>>() {
+			@Override
+			protected Map<String,Method[]> computeValue( Class<?> type ) {
+				Map<String,List<Method>> lists = new HashMap<>();
+				addGetters(type.getDeclaredMethods(),lists);
+				addGetters(type.getMethods(),lists);
+				Map<String,Method[]> map = new HashMap<>();
+				for (Map.Entry<String,List<Method>> entry : lists.entrySet()) {
+					List<Method> list = entry.getValue();
+					map.put(entry.getKey(),list.toArray(new Method[list.size()]));
+				}
+				return map;
+			}
+		};
+
+	/**
+	 * Add the getter methods contained in the specified array to the specified
+	 * map indexed by property name.
+	 */
+	private static void addGetters(
+		Method[] methods, Map<String,List<Method>> map ) {
+		
 		for (Method method : methods) {
-			if( isMatchingSetterGetter(setter,method) ) {
-				return method;
+			String name = method.getName();
+			if( name.length()>3 && name.startsWith("get") &&
+				method.getParameterCount()==0 ) {
+				String propName = getGetterPropertyName(method);
+				List<Method> list = map.get(propName);
+				if( list == null ) {
+					list = new ArrayList<>();
+					map.put(propName,list);
+				}
+				list.add(method);
 			}
 		}
-		
-		throw new NoSuchMethodException();
 	}
 
 	/**
@@ -281,15 +330,21 @@ public class MethodHelper {
 
 	/**
 	 * Return <code>true</code> if the target and source methods share the same
-	 * signature.
+	 * signature, i.e. the same name and the same erased parameter types.
 	 * 
 	 * @param src     the source method
 	 * @param target  the target method
 	 */
 	public static boolean sameSignature( Method src, Method target ) {
-		String srcsig = getShortSignature(src);
-		String targetsig = getShortSignature(target);
-		boolean b = srcsig.equals(targetsig);
+		if( ! src.getName().equals(target.getName()) ) {
+			return false;
+		}
+		if( src.getParameterCount() != target.getParameterCount() ) {
+			return false;
+		}
+		Class<?>[] srcptypes = src.getParameterTypes();
+		Class<?>[] targetptypes = target.getParameterTypes();
+		boolean b = Arrays.equals(srcptypes,targetptypes);
 		return b;
 	}
 }
@@ -0,0 +1,113 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.main;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import commons.io.ExternalSort;
+import commons.io.InputStreamLiner;
+import commons.util.CmdLineArgs;
+
+/**
+ * Sort the lines of a file which may not fit in memory.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class SortLines {
+
+    private static enum Flags { UNIQUE, REVERSE, IGNORECASE }
+    private static enum Options { TYPE, MEMORY, THREADS, TMPDIR }
+
+    public static void main( String[] args ) throws Exception {
+
+        CmdLineArgs<Flags,Options> cla = new CmdLineArgs<>();
+        cla.registerFlags(Flags.values());
+        cla.registerOptions(Options.values());
+        cla.setOptionDomain(Options.TYPE,new String[]{"unix","win","mac"});
+
+        try {
+            cla.parse(args);
+        }
+        catch( IllegalArgumentException iae ) {
+            System.err.println( "Error: " + iae.getMessage() );
+            usage();
+        }
+        List<String> files = cla.getFiles();
+        if ( files.size() != 2 )
+            usage();
+
+        int fileType = InputStreamLiner.UNIX;
+        String type = cla.getOptionValue(Options.TYPE);
+        if ( "win".equals(type) )  fileType = InputStreamLiner.WIN;
+        if ( "mac".equals(type) )  fileType = InputStreamLiner.MAC;
+
+        long memory = ExternalSort.DEFAULT_MEMORY_BUDGET;
+        int nbThreads = Runtime.getRuntime().availableProcessors();
+        try {
+            String value = cla.getOptionValue(Options.MEMORY);
+            if ( value != null )  memory = Long.parseLong(value)*1024*1024;
+            value = cla.getOptionValue(Options.THREADS);
+            if ( value != null )  nbThreads = Integer.parseInt(value);
+        }
+        catch( NumberFormatException nfe ) {
+            System.err.println( "Error: " + nfe.getMessage() );
+            usage();
+        }
+
+        Comparator<String> comparator =
+            cla.isFlagSet(Flags.IGNORECASE) ?
+            String.CASE_INSENSITIVE_ORDER : Comparator.<String>naturalOrder();
+        if ( cla.isFlagSet(Flags.REVERSE) ) {
+            comparator = Collections.reverseOrder(comparator);
+        }
+
+        ExternalSort sort =
+            new ExternalSort(
+                fileType, memory, comparator, cla.isFlagSet(Flags.UNIQUE),
+                nbThreads );
+        String tmpdir = cla.getOptionValue(Options.TMPDIR);
+        if ( tmpdir != null )  sort.setTempDirectory( new File(tmpdir) );
+
+        long count = sort.sort( new File(files.get(0)), new File(files.get(1)) );
+        System.out.println( count + " lines written" );
+    }
+
+    private static void usage() {
+        System.err.println( "Usage: java common.main.SortLines [options] <src> <dst>" );
+        System.err.println( "Sort the lines of a file which may not fit in memory." );
+        System.err.println( "<src>              : file to sort" );
+        System.err.println( "<dst>              : sorted file" );
+        System.err.println( "--unique           : write equal lines once" );
+        System.err.println( "--reverse          : sort in reverse order" );
+        System.err.println( "--ignorecase       : ignore case when comparing lines" );
+        System.err.println( "--type unix|win|mac: line separator (default: unix)" );
+        System.err.println( "--memory <MB>      : memory budget (default: 64)" );
+        System.err.println( "--threads <n>      : number of threads sorting runs" );
+        System.err.println( "--tmpdir <dir>     : directory for temporary files" );
+        System.exit(1);
+    }
+}
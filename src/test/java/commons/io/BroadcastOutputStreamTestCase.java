@@ -0,0 +1,226 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import commons.io.BroadcastOutputStream.Backpressure;
+
+/**
+ * Class for testing the functionalities of the {@link BroadcastOutputStream}
+ * class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class BroadcastOutputStreamTestCase {
+
+    /** The size of chunks used by the tests. */
+    private static final int CHUNK = 16;
+
+    @Test
+    public void testBlock() throws IOException {
+
+        // Recycled chunks must not be overwritten before all sinks wrote them
+        byte[] input = input(CHUNK*200+5);
+        ByteArrayOutputStream fast = new ByteArrayOutputStream();
+        SlowOutputStream slow = new SlowOutputStream();
+        slow.latch.countDown();
+
+        BroadcastOutputStream bos =
+            new BroadcastOutputStream(CHUNK,2,Backpressure.BLOCK,fast,slow);
+        for ( int i=0 ; i < input.length ; i++ ) {
+            if ( i%3 == 0 )  bos.write(input[i]);
+            else  bos.write(input,i,1);
+        }
+        bos.close();
+
+        Assert.assertArrayEquals( input, fast.toByteArray() );
+        Assert.assertArrayEquals( input, slow.toByteArray() );
+    }
+
+    @Test
+    public void testDrop() throws IOException {
+
+        byte[] input = input(CHUNK*100);
+        ByteArrayOutputStream fast = new ByteArrayOutputStream();
+        SlowOutputStream slow = new SlowOutputStream();
+
+        BroadcastOutputStream bos =
+            new BroadcastOutputStream(CHUNK,2,Backpressure.DROP,slow,fast);
+        bos.write(input);
+        bos.flush();
+        long dropped = bos.getDroppedBytes(0);
+        Assert.assertTrue( dropped > 0 );
+        slow.latch.countDown();
+        bos.close();
+
+        // Both sinks may drop chunks, which are accounted for
+        Assert.assertEquals( input.length, slow.size()+dropped );
+        Assert.assertEquals( input.length, fast.size()+bos.getDroppedBytes(1) );
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+
+        byte[] input = input(CHUNK*100+7);
+        ByteArrayOutputStream fast = new ByteArrayOutputStream();
+        SlowOutputStream slow = new SlowOutputStream();
+
+        BroadcastOutputStream bos =
+            new BroadcastOutputStream(CHUNK,2,Backpressure.SPILL,slow,fast);
+        bos.write(input,0,CHUNK*50);
+        slow.latch.countDown();
+        bos.write(input,CHUNK*50,input.length-CHUNK*50);
+        bos.close();
+
+        // Spilled bytes are written in order
+        Assert.assertArrayEquals( input, fast.toByteArray() );
+        Assert.assertArrayEquals( input, slow.toByteArray() );
+        Assert.assertEquals( 0, bos.getDroppedBytes(0) );
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+
+        final CountDownLatch flushed = new CountDownLatch(1);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushed.countDown();
+            }
+        };
+
+        BroadcastOutputStream bos = new BroadcastOutputStream(sink);
+        bos.write("abc".getBytes());
+        Assert.assertEquals( 0, sink.size() );
+        bos.flush();
+        Assert.assertTrue( flushed.await(10,TimeUnit.SECONDS) );
+        Assert.assertEquals( "abc", sink.toString() );
+        bos.close();
+    }
+
+    @Test
+    public void testFailingSink() throws IOException {
+
+        for (Backpressure policy : Backpressure.values()) {
+
+            byte[] input = input(CHUNK*50);
+            ByteArrayOutputStream fast = new ByteArrayOutputStream();
+            OutputStream failing = new OutputStream() {
+                public void write( int b ) throws IOException {
+                    throw new IOException("failure");
+                }
+            };
+
+            BroadcastOutputStream bos =
+                new BroadcastOutputStream(CHUNK,2,policy,failing,fast);
+            bos.write(input);
+            try {
+                bos.close();
+                Assert.fail(policy.toString());
+            }
+            catch( IOException ioe ) {
+                Assert.assertEquals( "failure", ioe.getMessage() );
+            }
+
+            // The other sinks receive all the bytes which are not dropped
+            if ( policy == Backpressure.DROP ) {
+                Assert.assertEquals(
+                    input.length, fast.size()+bos.getDroppedBytes(1) );
+            }
+            else {
+                Assert.assertArrayEquals( input, fast.toByteArray() );
+            }
+
+            // Closing again does not report the error twice
+            bos.close();
+        }
+    }
+
+    @Test(timeout=10000)
+    public void testTerminatedSink() throws Exception {
+
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        BroadcastOutputStream bos =
+            new BroadcastOutputStream(CHUNK,1,Backpressure.BLOCK,sink);
+
+        // Terminate the thread of the sink while it waits for chunks
+        Thread thread = null;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if ( t.getName().startsWith("BroadcastOutputStream-sink-") ) {
+                thread = t;
+            }
+        }
+        Assert.assertNotNull(thread);
+        while ( thread.getState() != Thread.State.WAITING ) {
+            Thread.sleep(10);
+        }
+        thread.interrupt();
+        thread.join();
+
+        // Neither writing more than the queue capacity nor closing blocks
+        bos.write(input(CHUNK*4));
+        try {
+            bos.close();
+            Assert.fail();
+        }
+        catch( IOException ioe ) {}
+    }
+
+    /** Return an array of the specified length filled with distinct values. */
+    private static byte[] input( int length ) {
+        byte[] input = new byte[length];
+        for ( int i=0 ; i < length ; i++ ) {
+            input[i] = (byte) (i*31+i/251);
+        }
+        return input;
+    }
+
+    /**
+     * An output stream which blocks on writes until its latch is released.
+     */
+    private static class SlowOutputStream extends ByteArrayOutputStream {
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public synchronized void write( byte[] b, int off, int len ) {
+            try {
+                latch.await();
+            }
+            catch( InterruptedException ie ) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            super.write(b,off,len);
+        }
+    }
+}
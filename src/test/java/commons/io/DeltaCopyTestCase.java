@@ -0,0 +1,114 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Class for testing the functionalities of the {@link DeltaCopy} class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class DeltaCopyTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int BLOCK_SIZE = 1024;
+
+    @Test
+    public void testInPlace() throws IOException {
+
+        byte[] old = random(100*BLOCK_SIZE,0);
+        byte[] content = old.clone();
+        content[50*BLOCK_SIZE+10] ^= 1;
+
+        long written = update(content,old);
+        Assert.assertTrue( written <= BLOCK_SIZE );
+    }
+
+    @Test
+    public void testInsertion() throws IOException {
+
+        byte[] old = random(100*BLOCK_SIZE,0);
+        byte[] content = new byte[ old.length+3 ];
+        System.arraycopy(old,0,content,0,1000);
+        System.arraycopy(old,1000,content,1003,old.length-1000);
+
+        update(content,old);
+    }
+
+    @Test
+    public void testTruncation() throws IOException {
+        byte[] old = random(100*BLOCK_SIZE+17,0);
+        byte[] content = Arrays.copyOf(old,40*BLOCK_SIZE+5);
+        update(content,old);
+    }
+
+    @Test
+    public void testUnrelated() throws IOException {
+        update( random(10*BLOCK_SIZE,1), random(20*BLOCK_SIZE,2) );
+    }
+
+    @Test
+    public void testNoDestination() throws IOException {
+        update( random(10*BLOCK_SIZE,1), null );
+    }
+
+    /**
+     * Update a file whose content is old with content and check the result.
+     *
+     * @return  the number of bytes written
+     */
+    private long update( byte[] content, byte[] old ) throws IOException {
+
+        File src = folder.newFile();
+        Files.write(src.toPath(),content);
+        File dst = new File(folder.getRoot(),"dst");
+        if ( old != null ) {
+            Files.write(dst.toPath(),old);
+        }
+
+        long written = DeltaCopy.update(src,dst,BLOCK_SIZE);
+
+        byte[] result = Files.readAllBytes(dst.toPath());
+        Assert.assertArrayEquals(content,result);
+        return written;
+    }
+
+    private static byte[] random( int length, long seed ) {
+        byte[] b = new byte[length];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+}
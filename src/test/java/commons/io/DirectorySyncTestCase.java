@@ -0,0 +1,174 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Class for testing the functionalities of the {@link DirectorySync} class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class DirectorySyncTestCase {
+
+    /** A modification time in the past, in milliseconds. */
+    private static final long MTIME = 1_000_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File src, dst;
+
+    @Before
+    public void setUp() throws IOException {
+        src = folder.newFolder("src");
+        dst = new File(folder.getRoot(),"dst");
+        write(src,"a.txt","abc",MTIME);
+        write(src,"d/b.txt","defgh",MTIME);
+        new File(src,"empty").mkdir();
+    }
+
+    @Test
+    public void testCopy() throws IOException {
+
+        DirectorySync.Summary summary = new DirectorySync(2,false,true).sync(src,dst);
+        Assert.assertEquals( 2, summary.getFilesCopied() );
+        Assert.assertEquals( 8, summary.getBytesCopied() );
+        Assert.assertEquals( 0, summary.getFilesSkipped() );
+
+        Assert.assertEquals( "abc", read(dst,"a.txt") );
+        Assert.assertEquals( "defgh", read(dst,"d/b.txt") );
+        Assert.assertTrue( new File(dst,"empty").isDirectory() );
+        Assert.assertEquals( MTIME, new File(dst,"d/b.txt").lastModified() );
+    }
+
+    @Test
+    public void testSkipUnchanged() throws IOException {
+
+        DirectorySync ds = new DirectorySync(2,false,true);
+        ds.sync(src,dst);
+
+        // Same size and modification time: the content is not even read
+        write(dst,"a.txt","xyz",MTIME);
+        DirectorySync.Summary summary = ds.sync(src,dst);
+        Assert.assertEquals( 0, summary.getFilesCopied() );
+        Assert.assertEquals( 2, summary.getFilesSkipped() );
+        Assert.assertEquals( "xyz", read(dst,"a.txt") );
+    }
+
+    @Test
+    public void testOverwriteChanged() throws IOException {
+
+        DirectorySync ds = new DirectorySync(2,false,true);
+        ds.sync(src,dst);
+
+        // Different size
+        write(src,"a.txt","abcd",MTIME);
+        // Same size, different modification time
+        write(src,"d/b.txt","DEFGH",MTIME+2000);
+
+        DirectorySync.Summary summary = ds.sync(src,dst);
+        Assert.assertEquals( 2, summary.getFilesCopied() );
+        Assert.assertEquals( "abcd", read(dst,"a.txt") );
+        Assert.assertEquals( "DEFGH", read(dst,"d/b.txt") );
+        Assert.assertEquals( MTIME+2000, new File(dst,"d/b.txt").lastModified() );
+    }
+
+    @Test
+    public void testCompareContent() throws IOException {
+
+        new DirectorySync(1,true,true).sync(src,dst);
+
+        // Same content, different modification time: only the time is set
+        write(src,"a.txt","abc",MTIME+2000);
+        write(src,"d/b.txt","DEFGH",MTIME+2000);
+        DirectorySync.Summary summary = new DirectorySync(1,true,true).sync(src,dst);
+        Assert.assertEquals( 1, summary.getFilesCopied() );
+        Assert.assertEquals( 1, summary.getFilesSkipped() );
+        Assert.assertEquals( MTIME+2000, new File(dst,"a.txt").lastModified() );
+        Assert.assertEquals( "DEFGH", read(dst,"d/b.txt") );
+    }
+
+    @Test
+    public void testDelete() throws IOException {
+
+        new DirectorySync(2,false,true).sync(src,dst);
+        write(dst,"extra.txt","x",MTIME);
+        write(dst,"x/y/z.txt","z",MTIME);
+        write(dst,"x/t.txt","t",MTIME);
+
+        // Nothing is deleted unless requested
+        DirectorySync.Summary summary = new DirectorySync(2,false,false).sync(src,dst);
+        Assert.assertEquals( 0, summary.getFilesDeleted() );
+        Assert.assertTrue( new File(dst,"x/y/z.txt").exists() );
+
+        summary = new DirectorySync(2,false,true).sync(src,dst);
+        Assert.assertEquals( 3, summary.getFilesDeleted() );
+        Assert.assertEquals( 2, summary.getDirectoriesDeleted() );
+        Assert.assertFalse( new File(dst,"extra.txt").exists() );
+        Assert.assertFalse( new File(dst,"x").exists() );
+        Assert.assertTrue( new File(dst,"a.txt").exists() );
+        Assert.assertTrue( new File(dst,"empty").isDirectory() );
+    }
+
+    @Test
+    public void testReplaceDirectoryByFile() throws IOException {
+
+        new DirectorySync(2,false,true).sync(src,dst);
+        write(dst,"e/f.txt","f",MTIME);
+        write(src,"e","e",MTIME);
+        write(src,"empty/g.txt","g",MTIME);
+        new File(dst,"empty").delete();
+        write(dst,"empty","not a directory",MTIME);
+
+        DirectorySync.Summary summary = new DirectorySync(2,false,true).sync(src,dst);
+        Assert.assertEquals( 1, summary.getDirectoriesDeleted() );
+        Assert.assertEquals( 1, summary.getFilesDeleted() );
+        Assert.assertEquals( "e", read(dst,"e") );
+        Assert.assertEquals( "g", read(dst,"empty/g.txt") );
+    }
+
+    private static void write( File dir, String name, String content, long mtime )
+    throws IOException {
+        File file = new File(dir,name);
+        file.getParentFile().mkdirs();
+        Files.write( file.toPath(), content.getBytes(StandardCharsets.UTF_8) );
+        Assert.assertTrue( file.setLastModified(mtime) );
+    }
+
+    private static String read( File dir, String name ) throws IOException {
+        return new String(
+            Files.readAllBytes(new File(dir,name).toPath()),
+            StandardCharsets.UTF_8 );
+    }
+}
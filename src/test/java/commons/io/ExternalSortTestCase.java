@@ -0,0 +1,141 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Class for testing the functionalities of the {@link ExternalSort} class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class ExternalSortTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testInMemory() throws IOException {
+        List<String> lines = lines(100);
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        Assert.assertEquals( expected, sort(lines,1024*1024,false) );
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        List<String> lines = lines(10000);
+        List<String> expected = new ArrayList<>(lines);
+        Collections.sort(expected);
+        Assert.assertEquals( expected, sort(lines,4096,false) );
+        Assert.assertEquals( 0, folder.getRoot().list().length );
+    }
+
+    @Test
+    public void testUnique() throws IOException {
+        List<String> lines = lines(10000);
+        List<String> expected = new ArrayList<>( new TreeSet<>(lines) );
+        Assert.assertEquals( expected, sort(lines,4096,true) );
+    }
+
+    @Test
+    public void testMergeFailure() throws IOException {
+
+        // One run per line, the third group of the first merge pass fails
+        StringBuilder sb = new StringBuilder();
+        for ( int i=0 ; i < 1000 ; i++ ) {
+            sb.append( i==300 ? "fail" : Integer.toString(i) ).append("\r\n");
+        }
+        ExternalSort sort =
+            new ExternalSort(
+                InputStreamLiner.WIN, 100,
+                (a,b) -> {
+                    if ( a.equals("fail") || b.equals("fail") ) {
+                        throw new IllegalStateException();
+                    }
+                    return a.compareTo(b);
+                },
+                false, 3 );
+        sort.setTempDirectory(folder.getRoot());
+
+        try {
+            sort.sort(
+                new ByteArrayInputStream(sb.toString().getBytes()),
+                new ByteArrayOutputStream() );
+            Assert.fail();
+        }
+        catch( IllegalStateException ise ) {}
+        Assert.assertEquals( 0, folder.getRoot().list().length );
+    }
+
+    private List<String> sort( List<String> lines, long budget, boolean unique )
+    throws IOException {
+
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append("\r\n");
+        }
+        ExternalSort sort =
+            new ExternalSort(InputStreamLiner.WIN,budget,null,unique,3);
+        sort.setTempDirectory(folder.getRoot());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        long count =
+            sort.sort( new ByteArrayInputStream(sb.toString().getBytes()), baos );
+
+        List<String> result = new ArrayList<>();
+        InputStreamLiner isl =
+            new InputStreamLiner( new ByteArrayInputStream(baos.toByteArray()) );
+        String line;
+        while ( (line=isl.readLineWin()) != null ) {
+            result.add(line);
+        }
+        isl.close();
+        Assert.assertEquals( count, result.size() );
+        return result;
+    }
+
+    /** Return random lines, some of them containing a 0x0A byte. */
+    private static List<String> lines( int n ) {
+        Random random = new Random(0);
+        List<String> lines = new ArrayList<>();
+        for ( int i=0 ; i < n ; i++ ) {
+            int value = random.nextInt(n/2);
+            lines.add( value%7==0 ? value+"\n"+i%3 : Integer.toString(value) );
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,97 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.zip.Adler32;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Class for testing the functionalities of the {@link FileExt} class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class FileExtTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCopyFileChecksum() throws Exception {
+
+        // Larger than the copy buffer
+        byte[] input = PipedStreamsTestCase.input(200*1024+3);
+        File src = folder.newFile("src");
+        Files.write(src.toPath(),input);
+        File dir = folder.newFolder("dst");
+
+        Adler32 adler = new Adler32();
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        File dst = new FileExt(src).copyFile(dir,adler,md,null);
+
+        Assert.assertEquals( new File(dir,"src"), dst );
+        Assert.assertArrayEquals( input, Files.readAllBytes(dst.toPath()) );
+        Adler32 expected = new Adler32();
+        expected.update(input,0,input.length);
+        Assert.assertEquals( expected.getValue(), adler.getValue() );
+        Assert.assertArrayEquals(
+            MessageDigest.getInstance("MD5").digest(input), md.digest() );
+
+        // Nothing to update
+        new FileExt(src).copyFile(new File(dir,"other"),null,null,null);
+        Assert.assertTrue( new FileExt(src).compareContent(new File(dir,"other")) );
+    }
+
+    @Test
+    public void testRateLimited() throws Exception {
+
+        byte[] input = PipedStreamsTestCase.input(10000);
+        File src = folder.newFolder("src");
+        Files.write(new File(src,"a").toPath(),input);
+        Files.write(new File(src,"b").toPath(),input);
+        File copy = folder.newFolder("copy");
+        File dst = folder.newFolder("dst");
+
+        // The bucket is shared by both transfers: 30000 bytes in all
+        TokenBucket bucket = new TokenBucket(100000,0);
+        long start = System.nanoTime();
+        new FileExt(src,"a").copyFile(copy,null,null,bucket);
+        new FileExt(src).moveFiles(dst,bucket);
+        Assert.assertTrue( TokenBucketTestCase.elapsedMillis(start) >= 250 );
+
+        Assert.assertArrayEquals(
+            input, Files.readAllBytes(new File(copy,"a").toPath()) );
+        Assert.assertArrayEquals(
+            input, Files.readAllBytes(new File(dst,"a").toPath()) );
+        Assert.assertArrayEquals(
+            input, Files.readAllBytes(new File(dst,"b").toPath()) );
+        Assert.assertEquals( 0, src.list().length );
+    }
+}
@@ -26,6 +26,8 @@ package commons.io;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collection;
@@ -83,4 +85,46 @@ public class FindBlockAndReplaceOutputStreamTestCase {
         final String result = baos.toString();
         Assert.assertEquals(expected,result);
     }
+
+    /**
+     * Interrupt the filtering at every position of the input and resume it
+     * from the exported state.
+     */
+    @Test
+    public void testCheckpoint() throws Exception {
+
+        final byte[] input = values[0].getBytes();
+
+        for ( int i=0 ; i <= input.length ; i++ ) {
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            FindBlockAndReplaceOutputStream os = new FindBlockAndReplaceOutputStream(baos,values[1],values[2],values[3]);
+            os.write(input,0,i);
+            os.flush();
+            FindBlockAndReplaceOutputStream.State state = copy(os.getState());
+            Assert.assertEquals( i, state.getBytesIn() );
+
+            // Resume with the bytes written before the checkpoint
+            byte[] written = baos.toByteArray();
+            baos = new ByteArrayOutputStream();
+            baos.write(written,0,(int)state.getOutputOffset());
+            os = new FindBlockAndReplaceOutputStream(baos,values[1],values[2],values[3]);
+            os.setState(state);
+            os.write(input,(int)state.getBytesIn(),input.length-i);
+            os.close();
+
+            Assert.assertEquals(expected,baos.toString());
+        }
+    }
+
+    /** Return a copy of the specified state obtained by serialization. */
+    private static FindBlockAndReplaceOutputStream.State copy( FindBlockAndReplaceOutputStream.State state ) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(state);
+        oos.close();
+        ObjectInputStream ois =
+            new ObjectInputStream( new ByteArrayInputStream(baos.toByteArray()) );
+        return (FindBlockAndReplaceOutputStream.State) ois.readObject();
+    }
 }
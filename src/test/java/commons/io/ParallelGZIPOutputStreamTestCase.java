@@ -0,0 +1,102 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class for testing the functionalities of the
+ * {@link ParallelGZIPOutputStream} class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class ParallelGZIPOutputStreamTestCase {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+
+        byte[] input = createInput(1000000);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ParallelGZIPOutputStream os =
+            new ParallelGZIPOutputStream(baos,40000,null);
+        PipedStreams.dump( new ByteArrayInputStream(input), os, new byte[777] );
+        os.close();
+
+        byte[] result = gunzip(baos.toByteArray());
+        Assert.assertArrayEquals(input,result);
+    }
+
+    @Test
+    public void testFlush() throws IOException {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ParallelGZIPOutputStream os = new ParallelGZIPOutputStream(baos);
+        os.write("abc".getBytes());
+        os.flush();
+        os.write('d');
+        os.flush();
+        os.close();
+
+        byte[] result = gunzip(baos.toByteArray());
+        Assert.assertEquals("abcd",new String(result));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ParallelGZIPOutputStream os = new ParallelGZIPOutputStream(baos);
+        os.close();
+
+        byte[] result = gunzip(baos.toByteArray());
+        Assert.assertEquals(0,result.length);
+    }
+
+    private static byte[] createInput( int length ) {
+        Random random = new Random(0);
+        String[] words = new String[]{"lorem ","ipsum ","dolor ","sit ","amet\n"};
+        StringBuilder sb = new StringBuilder();
+        while ( sb.length() < length ) {
+            sb.append( words[random.nextInt(words.length)] );
+        }
+        return sb.toString().getBytes();
+    }
+
+    private static byte[] gunzip( byte[] compressed ) throws IOException {
+        InputStream is =
+            new GZIPInputStream( new ByteArrayInputStream(compressed) );
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        PipedStreams.dump(is,baos,new byte[4096]);
+        is.close();
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,264 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousByteChannel;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Class for testing the functionalities of the {@link PipedStreams} class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class PipedStreamsTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /** Return an array of the specified length filled with various values. */
+    static byte[] input( int length ) {
+        byte[] input = new byte[length];
+        for ( int i=0 ; i < length ; i++ ) {
+            input[i] = (byte) (i*31+i/251);
+        }
+        return input;
+    }
+
+    @Test
+    public void testDumpChecksum() throws Exception {
+
+        byte[] input = input(10000);
+        CRC32 crc = new CRC32();
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        // A buffer size which does not divide the input length
+        long len =
+            PipedStreams.dump(
+                new ByteArrayInputStream(input), os, new byte[777],
+                crc, md, null );
+
+        Assert.assertEquals( input.length, len );
+        Assert.assertArrayEquals( input, os.toByteArray() );
+        CRC32 expected = new CRC32();
+        expected.update(input);
+        Assert.assertEquals( expected.getValue(), crc.getValue() );
+        Assert.assertArrayEquals(
+            MessageDigest.getInstance("SHA-256").digest(input), md.digest() );
+    }
+
+    @Test
+    public void testDumpRate() throws Exception {
+
+        // 20000 bytes at 100000 bytes per second after a burst of 1000 bytes
+        byte[] input = input(21000);
+        TokenBucket bucket = new TokenBucket(100000,1000);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        long len =
+            PipedStreams.dump(
+                new ByteArrayInputStream(input), os, new byte[1000],
+                null, null, bucket );
+
+        Assert.assertTrue( TokenBucketTestCase.elapsedMillis(start) >= 180 );
+        Assert.assertEquals( input.length, len );
+        Assert.assertArrayEquals( input, os.toByteArray() );
+    }
+
+    @Test
+    public void testDumpAsyncFiles() throws Exception {
+
+        // Several buffers of the asynchronous dump
+        byte[] input = input(200*1024+3);
+        File src = folder.newFile("src");
+        Files.write(src.toPath(),input);
+        File dst = new File(folder.getRoot(),"dst");
+
+        try( AsynchronousFileChannel in =
+                AsynchronousFileChannel.open(src.toPath(),StandardOpenOption.READ);
+             AsynchronousFileChannel out =
+                AsynchronousFileChannel.open(
+                    dst.toPath(),
+                    StandardOpenOption.WRITE,StandardOpenOption.CREATE) ) {
+            long len = PipedStreams.dumpAsync(in,out).get();
+            Assert.assertEquals( input.length, len );
+        }
+        Assert.assertArrayEquals( input, Files.readAllBytes(dst.toPath()) );
+    }
+
+    @Test
+    public void testDumpAsyncChannels() throws Exception {
+
+        byte[] input = input(150*1024+5);
+        File src = folder.newFile("src");
+        Files.write(src.toPath(),input);
+        File dst = new File(folder.getRoot(),"dst");
+
+        // File to channel
+        MemoryChannel sink = new MemoryChannel(null);
+        try( AsynchronousFileChannel in =
+                AsynchronousFileChannel.open(src.toPath(),StandardOpenOption.READ) ) {
+            long len = PipedStreams.dumpAsync(in,sink).get();
+            Assert.assertEquals( input.length, len );
+        }
+        Assert.assertArrayEquals( input, sink.out.toByteArray() );
+
+        // Channel to file
+        try( AsynchronousFileChannel out =
+                AsynchronousFileChannel.open(
+                    dst.toPath(),
+                    StandardOpenOption.WRITE,StandardOpenOption.CREATE) ) {
+            long len = PipedStreams.dumpAsync(new MemoryChannel(input),out).get();
+            Assert.assertEquals( input.length, len );
+        }
+        Assert.assertArrayEquals( input, Files.readAllBytes(dst.toPath()) );
+
+        // Channel to channel
+        sink = new MemoryChannel(null);
+        long len = PipedStreams.dumpAsync(new MemoryChannel(input),sink).get();
+        Assert.assertEquals( input.length, len );
+        Assert.assertArrayEquals( input, sink.out.toByteArray() );
+    }
+
+    @Test
+    public void testDumpAsyncFailure() throws Exception {
+
+        MemoryChannel sink = new MemoryChannel(null);
+        sink.failure = new IOException("failure");
+        CompletableFuture<Long> future =
+            PipedStreams.dumpAsync(new MemoryChannel(input(1000)),sink);
+        try {
+            future.get();
+            Assert.fail();
+        }
+        catch( ExecutionException ee ) {
+            Assert.assertSame( sink.failure, ee.getCause() );
+        }
+        Assert.assertTrue( future.isCompletedExceptionally() );
+    }
+
+    @Test
+    public void testDumpAsyncCancel() throws Exception {
+
+        MemoryChannel src = new MemoryChannel(input(1000));
+        src.paused = true;
+        MemoryChannel sink = new MemoryChannel(null);
+        CompletableFuture<Long> future = PipedStreams.dumpAsync(src,sink);
+        Assert.assertFalse( future.isDone() );
+
+        // The pending read completes after the cancellation: nothing is written
+        Assert.assertTrue( future.cancel(false) );
+        src.resume();
+        Assert.assertEquals( 0, sink.out.size() );
+        try {
+            future.get();
+            Assert.fail();
+        }
+        catch( CancellationException ce ) {}
+    }
+
+    /**
+     * An in-memory channel completing operations in the calling thread. Reads
+     * and writes transfer at most 1000 bytes at a time. A paused channel keeps
+     * its read pending until it is resumed.
+     */
+    private static class MemoryChannel implements AsynchronousByteChannel {
+
+        private ByteArrayInputStream in;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOException failure;
+        boolean paused;
+        private Runnable pending;
+
+        MemoryChannel( byte[] input ) {
+            if ( input != null )  in = new ByteArrayInputStream(input);
+        }
+
+        public <A> void read(
+                final ByteBuffer dst, final A attachment,
+                final CompletionHandler<Integer,? super A> handler ) {
+            Runnable r = new Runnable() {
+                public void run() {
+                    byte[] b = new byte[ Math.min(dst.remaining(),1000) ];
+                    int n = in.read(b,0,b.length);
+                    if ( n > 0 )  dst.put(b,0,n);
+                    handler.completed(n,attachment);
+                }
+            };
+            if (paused)  pending = r;
+            else  r.run();
+        }
+
+        void resume() {
+            paused = false;
+            pending.run();
+        }
+
+        public <A> void write(
+                ByteBuffer src, A attachment,
+                CompletionHandler<Integer,? super A> handler ) {
+            if ( failure != null ) {
+                handler.failed(failure,attachment);
+                return;
+            }
+            byte[] b = new byte[ Math.min(src.remaining(),1000) ];
+            src.get(b);
+            out.write(b,0,b.length);
+            handler.completed(b.length,attachment);
+        }
+
+        public Future<Integer> read( ByteBuffer dst ) {
+            throw new UnsupportedOperationException();
+        }
+
+        public Future<Integer> write( ByteBuffer src ) {
+            throw new UnsupportedOperationException();
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {}
+    }
+}
@@ -0,0 +1,134 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class for testing the functionalities of the {@link RecordSplitOutputStream}
+ * class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class RecordSplitOutputStreamTestCase {
+
+    /** Sinks are kept in memory. */
+    private Map<Long,ByteArrayOutputStream> sinks = new HashMap<>();
+
+    private RecordSplitOutputStream.SinkFactory factory =
+        new RecordSplitOutputStream.SinkFactory() {
+            public OutputStream open( long sink, boolean append ) {
+                Assert.assertEquals( sinks.containsKey(sink), append );
+                if ( ! append ) {
+                    sinks.put( sink, new ByteArrayOutputStream() );
+                }
+                return sinks.get(sink);
+            }
+        };
+
+    @Test
+    public void testRoundRobin() throws IOException {
+        split( "a;b;c;d;e", ";", RecordSplitOutputStream.roundRobin(2), 1 );
+        Assert.assertEquals( "a;c;e", sinks.get(0L).toString() );
+        Assert.assertEquals( "b;d;", sinks.get(1L).toString() );
+    }
+
+    @Test
+    public void testPerRecord() throws IOException {
+        long count =
+            split( "abaabab|abab", "abab", RecordSplitOutputStream.perRecord(), 2 );
+        Assert.assertEquals( 2, count );
+        Assert.assertEquals( "abaabab", sinks.get(0L).toString() );
+        Assert.assertEquals( "|abab", sinks.get(1L).toString() );
+    }
+
+    @Test
+    public void testPerRecordManySinks() throws IOException {
+
+        RecordSplitOutputStream rsos =
+            new RecordSplitOutputStream(
+                ";", RecordSplitOutputStream.perRecord(), factory, 1 );
+        for ( int i=0 ; i < 100 ; i++ ) {
+            rsos.write( (i+";").getBytes() );
+        }
+        rsos.close();
+        Assert.assertEquals( 100, sinks.size() );
+        Assert.assertEquals( "42;", sinks.get(42L).toString() );
+    }
+
+    @Test
+    public void testHash() throws IOException {
+        split( "x\ny\nx\nz\nx\n", "\n", RecordSplitOutputStream.hash(3), 3 );
+        boolean found = false;
+        for (ByteArrayOutputStream baos : sinks.values()) {
+            String s = baos.toString();
+            if ( s.contains("x") ) {
+                Assert.assertFalse(found);
+                Assert.assertEquals( 3, s.length()-s.replace("x","").length() );
+                found = true;
+            }
+        }
+        Assert.assertTrue(found);
+    }
+
+    /**
+     * Write the input byte per byte and in bulk, and check that both give the
+     * same sinks.
+     */
+    private long split(
+            String input, String delimiter,
+            RecordSplitOutputStream.Partitioner partitioner, int maxOpenSinks )
+    throws IOException {
+
+        RecordSplitOutputStream rsos =
+            new RecordSplitOutputStream(delimiter,partitioner,factory,maxOpenSinks);
+        for (byte b : input.getBytes()) {
+            rsos.write(b);
+        }
+        rsos.close();
+        Map<Long,String> expected = new HashMap<>();
+        for (Map.Entry<Long,ByteArrayOutputStream> entry : sinks.entrySet()) {
+            expected.put( entry.getKey(), entry.getValue().toString() );
+        }
+
+        sinks.clear();
+        rsos = new RecordSplitOutputStream(delimiter,partitioner,factory,maxOpenSinks);
+        rsos.write(input.getBytes());
+        rsos.close();
+        Assert.assertEquals( expected.keySet(), sinks.keySet() );
+        for (Map.Entry<Long,String> entry : expected.entrySet()) {
+            Assert.assertEquals(
+                entry.getValue(), sinks.get(entry.getKey()).toString() );
+        }
+
+        return rsos.getRecordCount();
+    }
+}
@@ -0,0 +1,153 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Class for testing the functionalities of the {@link ReverseLineReader}
+ * class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class ReverseLineReaderTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadLine() throws IOException {
+        String[] contents = new String[]{
+            "", "\n", "a", "a\n", "a\n\nbc", "a\nbc\n\n", "foo\nhello world"
+        };
+        for (String content : contents) {
+            check( content, InputStreamLiner.UNIX );
+            check( content.replace('\n','\r'), InputStreamLiner.MAC );
+            check( content.replace("\n","\r\n"), InputStreamLiner.WIN );
+        }
+        check( "a\rb\r\nc\r", InputStreamLiner.WIN );
+    }
+
+    @Test
+    public void testWindows() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for ( int i=0 ; i < 1000 ; i++ ) {
+            sb.append("line ").append(i).append("\r\n");
+        }
+        check( sb.toString(), InputStreamLiner.WIN );
+    }
+
+    @Test
+    public void testTail() throws IOException {
+        File file = folder.newFile();
+        Files.write( file.toPath(), "a\nb\nc\nd\n".getBytes() );
+        ReverseLineReader rlr = new ReverseLineReader(file,InputStreamLiner.UNIX);
+        Assert.assertEquals( Arrays.asList("c","d"), rlr.tail(2) );
+        rlr.close();
+    }
+
+    @Test(timeout=10000)
+    public void testFollow() throws Exception {
+
+        File file = folder.newFile();
+        Files.write( file.toPath(), "old\n".getBytes() );
+        final ReverseLineReader rlr =
+            new ReverseLineReader(file,InputStreamLiner.UNIX);
+        final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        Thread follower = new Thread() {
+            public void run() {
+                try {
+                    rlr.follow( line -> lines.add(line), 10 );
+                }
+                catch( IOException | InterruptedException e ) {}
+            }
+        };
+        follower.start();
+
+        // Lines present when the file was opened are not returned
+        append( file, "a\nb" );
+        Assert.assertEquals( "a", lines.poll(5,TimeUnit.SECONDS) );
+
+        // An incomplete line is returned once it is terminated
+        Assert.assertNull( lines.poll(100,TimeUnit.MILLISECONDS) );
+        append( file, "c\nd\n" );
+        Assert.assertEquals( "bc", lines.poll(5,TimeUnit.SECONDS) );
+        Assert.assertEquals( "d", lines.poll(5,TimeUnit.SECONDS) );
+
+        // Interrupting the thread stops following the file
+        follower.interrupt();
+        follower.join();
+        Assert.assertTrue( lines.isEmpty() );
+        rlr.close();
+    }
+
+    private static void append( File file, String content ) throws IOException {
+        Files.write(
+            file.toPath(), content.getBytes(), StandardOpenOption.APPEND );
+    }
+
+    /**
+     * Check that the lines read backwards with small windows are the ones read
+     * with InputStreamLiner.
+     */
+    private void check( String content, int type ) throws IOException {
+
+        List<String> expected = new ArrayList<>();
+        InputStreamLiner isl =
+            new InputStreamLiner( new ByteArrayInputStream(content.getBytes()) );
+        String line;
+        while ( (line=isl.readLine(type)) != null ) {
+            expected.add(line);
+        }
+        isl.close();
+        Collections.reverse(expected);
+
+        File file = folder.newFile();
+        Files.write( file.toPath(), content.getBytes() );
+        ReverseLineReader rlr = new ReverseLineReader(file,type,7);
+        List<String> lines = new ArrayList<>();
+        while ( (line=rlr.readLine()) != null ) {
+            lines.add(line);
+        }
+        rlr.close();
+
+        Assert.assertEquals(expected,lines);
+    }
+}
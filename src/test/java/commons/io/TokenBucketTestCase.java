@@ -0,0 +1,132 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class for testing the functionalities of the {@link TokenBucket} class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class TokenBucketTestCase {
+
+    @Test
+    public void testUnlimited() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(0,0);
+        long start = System.nanoTime();
+        bucket.acquire(Long.MAX_VALUE/2);
+        Assert.assertTrue( bucket.tryAcquire(1000) );
+        Assert.assertTrue( elapsedMillis(start) < 1000 );
+    }
+
+    @Test
+    public void testTryAcquire() {
+        TokenBucket bucket = new TokenBucket(1,100);
+        Assert.assertTrue( bucket.tryAcquire(60) );
+        Assert.assertFalse( bucket.tryAcquire(60) );
+        Assert.assertTrue( bucket.tryAcquire(40) );
+    }
+
+    @Test
+    public void testRate() throws InterruptedException {
+
+        // 20000 bytes at 100000 bytes per second, once the burst is consumed
+        TokenBucket bucket = new TokenBucket(100000,1000);
+        long start = System.nanoTime();
+        bucket.acquire(1000);
+        for ( int i=0 ; i < 20 ; i++ ) {
+            bucket.acquire(1000);
+        }
+        Assert.assertTrue( elapsedMillis(start) >= 180 );
+    }
+
+    @Test(timeout=10000)
+    public void testSmallRequestNotDelayedByLaterOnes() throws Exception {
+
+        final TokenBucket bucket = new TokenBucket(10000,0);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        // A transfer using the bucket continuously with large requests
+        Thread t = new Thread() {
+            public void run() {
+                try {
+                    while ( ! stop.get() ) {
+                        started.countDown();
+                        bucket.acquire(2000);
+                    }
+                }
+                catch( InterruptedException ie ) {}
+            }
+        };
+        t.start();
+        started.await();
+
+        /*
+         * The small request waits for the debt of the requests made before it
+         * (at most 2000 tokens, i.e. 0.2s) but not for the ones made after.
+         */
+        for ( int i=0 ; i < 5 ; i++ ) {
+            long start = System.nanoTime();
+            bucket.acquire(10);
+            Assert.assertTrue( elapsedMillis(start) < 1000 );
+        }
+
+        stop.set(true);
+        t.join();
+    }
+
+    @Test(timeout=10000)
+    public void testSetRate() throws Exception {
+
+        final TokenBucket bucket = new TokenBucket(1,0);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread t = new Thread() {
+            public void run() {
+                try {
+                    bucket.acquire(1000000);
+                    done.countDown();
+                }
+                catch( InterruptedException ie ) {}
+            }
+        };
+        t.start();
+        Assert.assertFalse( done.await(100,TimeUnit.MILLISECONDS) );
+
+        // Removing the limit releases the waiting transfer
+        bucket.setRate(0,0);
+        Assert.assertTrue( done.await(5,TimeUnit.SECONDS) );
+        Assert.assertEquals( 0, bucket.getRate() );
+    }
+
+    static long elapsedMillis( long start ) {
+        return (System.nanoTime()-start) / 1000000L;
+    }
+}
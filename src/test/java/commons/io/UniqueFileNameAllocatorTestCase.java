@@ -0,0 +1,106 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Class for testing the functionalities of the {@link
+ * UniqueFileNameAllocator} class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class UniqueFileNameAllocatorTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testNames() throws Exception {
+
+        File dir = folder.getRoot();
+        UniqueFileNameAllocator allocator = new UniqueFileNameAllocator();
+        Assert.assertEquals( "a.txt", allocator.allocate(dir,"a.txt").getName() );
+        Assert.assertEquals( "a0.txt", allocator.allocate(dir,"a.txt").getName() );
+        Assert.assertEquals( "b", allocator.allocate(dir,"b").getName() );
+        Assert.assertEquals( "b0", allocator.allocate(dir,"b").getName() );
+
+        // Numbering starts after the greatest index in use
+        folder.newFile("c.txt");
+        folder.newFile("c7.txt");
+        Assert.assertEquals( "c8.txt", allocator.allocate(dir,"c.txt").getName() );
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+
+        // Indexes evicted from the cache are recomputed from the directory
+        File dir = folder.getRoot();
+        UniqueFileNameAllocator allocator = new UniqueFileNameAllocator(1);
+        Set<String> names = new HashSet<>();
+        for ( int i=0 ; i < 5 ; i++ ) {
+            Assert.assertTrue( names.add(allocator.allocate(dir,"a.txt").getName()) );
+            Assert.assertTrue( names.add(allocator.allocate(dir,"b").getName()) );
+        }
+        Assert.assertTrue( names.contains("a3.txt") );
+        Assert.assertTrue( names.contains("b3") );
+        Assert.assertEquals( 10, dir.list().length );
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+
+        final File dir = folder.getRoot();
+        final UniqueFileNameAllocator allocator = new UniqueFileNameAllocator();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<File>> futures = new ArrayList<>();
+        for ( int i=0 ; i < 400 ; i++ ) {
+            futures.add( executor.submit( new Callable<File>() {
+                public File call() throws Exception {
+                    return allocator.allocate(dir,"a.txt");
+                }
+            }));
+        }
+
+        Set<File> files = new HashSet<>();
+        for (Future<File> future : futures) {
+            Assert.assertTrue( files.add(future.get()) );
+        }
+        executor.shutdown();
+        Assert.assertEquals( 400, dir.list().length );
+    }
+}
@@ -23,10 +23,17 @@
 
 package commons.ipf;
 
+import java.lang.annotation.Annotation;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -118,6 +125,176 @@ public class CompositeInjectionPointHashMapTestCase {
         Assert.assertEquals(targetcpt2,f);
     }
     
+    @Test
+    public void putOverridden()
+    throws NoSuchInjectionPointException, DuplicationInjectionPointException {
+        
+        CompositeInjectionPointHashMap ipm =
+            new CompositeInjectionPointHashMap(
+                Target.class, Reference.class.getName() );
+        
+        ipm.put("cpt");
+        InjectionPoint<?> ip = ipm.get("cpt");
+        InjectionPointFieldImpl<?> ipf = (InjectionPointFieldImpl<?>) ip;
+        Field f = ipf.getField();
+        Assert.assertEquals(targetcpt,f);
+    }
+    
+    @Test
+    public void putAllCached() throws DuplicationInjectionPointException {
+        
+        CompositeInjectionPointHashMap ipm1 =
+            new CompositeInjectionPointHashMap(Target.class,Reference.class.getName());
+        ipm1.putAll();
+        CompositeInjectionPointHashMap ipm2 =
+            new CompositeInjectionPointHashMap(Target.class,Reference.class.getName());
+        ipm2.putAll();
+        
+        Assert.assertEquals(ipm1.keySet(),ipm2.keySet());
+        for (String name : ipm1.keySet()) {
+            Assert.assertSame(ipm1.get(name),ipm2.get(name));
+        }
+    }
+    
+    @Test
+    public void putAllInherited() throws Exception {
+        
+        CompositeInjectionPointHashMap target =
+            new CompositeInjectionPointHashMap(Target.class,Reference.class.getName());
+        target.putAll();
+        CompositeInjectionPointHashMap leaf =
+            new CompositeInjectionPointHashMap(Leaf.class,Reference.class.getName());
+        leaf.putAll();
+        
+        Assert.assertEquals(target.keySet(),leaf.keySet());
+        for (String name : target.keySet()) {
+            if( name.equals("ref1") ) {
+                // Overridden in Leaf
+                InjectionPointMethodImpl<?> ipm =
+                    (InjectionPointMethodImpl<?>) leaf.get(name);
+                Assert.assertEquals(
+                    Leaf.class.getMethod("setRef1",String.class),
+                    ipm.getSetterMethod() );
+            }
+            else {
+                // Inherited injection points are resolved once
+                Assert.assertSame(target.get(name),leaf.get(name));
+            }
+        }
+    }
+    
+    @Test
+    public void compile() throws Exception {
+        
+        CompositeInjectionPointHashMap ipm =
+            new CompositeInjectionPointHashMap(Target.class,Reference.class.getName());
+        ipm.putAll();
+        CompiledInjector injector = ipm.compile();
+        Assert.assertEquals(ipm.size(),injector.size());
+        
+        Object[] values = new Object[ injector.size() ];
+        values[ injector.getSlot("cpt") ] = 1;
+        values[ injector.getSlot("cpt1") ] = 2;
+        values[ injector.getSlot("ref") ] = "foo";
+        Target target = new Target();
+        injector.inject(target,values);
+        Assert.assertEquals(1,target.cpt);
+        Assert.assertEquals(2,target.cpt1);
+        Assert.assertEquals(0,((Src)target).cpt);
+        
+        Object[] out = new Object[ injector.size() ];
+        injector.extract(target,out);
+        Assert.assertEquals(1,out[injector.getSlot("cpt")]);
+        Assert.assertEquals(0,out[injector.getSlot("cpt2")]);
+        Assert.assertNull(out[injector.getSlot("ref")]);
+        Assert.assertEquals(-1,injector.getSlot("foo"));
+    }
+    
+    @Test
+    public void injectAll() throws Exception {
+        
+        CompositeInjectionPointHashMap ipm =
+            new CompositeInjectionPointHashMap(Target.class,Reference.class.getName());
+        ipm.putAll();
+        
+        List<Object> targets = new ArrayList<>();
+        for ( int i=0 ; i < 1000 ; i++ ) {
+            targets.add( i==500 ? "foo" : new Target() );
+        }
+        CompiledInjector injector = ipm.compile();
+        Object[] values = new Object[ injector.size() ];
+        values[injector.getSlot("cpt")] = 1;
+        values[injector.getSlot("cpt2")] = 2;
+        
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            injector.injectAll(targets,values,pool);
+            Assert.fail();
+        }
+        catch( BulkInjectionException bie ) {
+            Assert.assertEquals(
+                Collections.singleton(500), bie.getFailures().keySet() );
+        }
+        finally {
+            pool.shutdown();
+        }
+        for (Object target : targets) {
+            if( target instanceof Target ) {
+                Assert.assertEquals(1,((Target)target).cpt);
+                Assert.assertEquals(2,((Target)target).cpt2);
+            }
+        }
+    }
+    
+    @Test
+    public void snapshot() throws Exception {
+        
+        CompositeInjectionPointHashMap ipm =
+            new CompositeInjectionPointHashMap(Target.class,Reference.class.getName());
+        ipm.putAll();
+        
+        Target target = new Target();
+        target.cpt = 1;
+        target.cpt2 = 2;
+        CompiledInjector.Snapshot snapshot = ipm.compile().snapshot(target);
+        
+        target.cpt = 10;
+        target.cpt2 = 20;
+        snapshot.restore(target);
+        Assert.assertEquals(1,target.cpt);
+        Assert.assertEquals(2,target.cpt2);
+        
+        // Copies share their values until modified
+        CompiledInjector.Snapshot copy = snapshot.copy();
+        copy.set(snapshot.getInjector().getSlot("cpt"),3);
+        copy.restore(target);
+        Assert.assertEquals(3,target.cpt);
+        snapshot.restore(target);
+        Assert.assertEquals(1,target.cpt);
+        
+        target.cpt = 4;
+        copy.capture(target);
+        Assert.assertEquals(4,copy.get(snapshot.getInjector().getSlot("cpt")));
+        Assert.assertEquals(1,snapshot.get(snapshot.getInjector().getSlot("cpt")));
+    }
+    
+    @Test
+    public void freeze() throws DuplicationInjectionPointException {
+        
+        CompositeInjectionPointHashMap ipm =
+            new CompositeInjectionPointHashMap(Target.class,Reference.class.getName());
+        ipm.putAll();
+        FrozenInjectionPointMap<Annotation> frozen = ipm.freeze();
+        
+        Assert.assertEquals(ipm.size(),frozen.size());
+        Assert.assertEquals(ipm.keySet(),new HashSet<>(Arrays.asList(frozen.getNames())));
+        for (String name : ipm.keySet()) {
+            Assert.assertSame(ipm.get(name),frozen.get(name));
+        }
+        Assert.assertNull(frozen.get("foo"));
+        Assert.assertFalse(frozen.containsKey("foo"));
+    }
+    
     @Test(expected=NoSuchInjectionPointException.class)
     public void putNoSuch()
     throws DuplicationInjectionPointException, NoSuchInjectionPointException {
@@ -164,6 +341,14 @@ public class CompositeInjectionPointHashMapTestCase {
         public void setRef2( String value ) {}
     }
     
+    class Middle extends Target {}
+    
+    class Leaf extends Middle {
+        @Override
+        @Reference
+        public void setRef1( String value ) {}
+    }
+    
     class Duplicate {
         @Reference
         private String ref;
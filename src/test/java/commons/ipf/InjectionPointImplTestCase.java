@@ -0,0 +1,182 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.ipf;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class for testing the injection points created by {@link
+ * InjectionPointImpl#getInjectionPoint(java.lang.reflect.AccessibleObject,
+ * java.lang.annotation.Annotation)}.
+ * 
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class InjectionPointImplTestCase {
+
+    @Test
+    public void field() throws Exception {
+        
+        InjectionPoint<?> ip =
+            InjectionPointImpl.getInjectionPoint(
+                Bean.class.getDeclaredField("name"), null );
+        Assert.assertTrue( ip instanceof InjectionPointFieldHandleImpl );
+        
+        Bean bean = new Bean();
+        ip.set(bean,"foo");
+        Assert.assertEquals("foo",bean.name);
+        Assert.assertEquals("foo",ip.get(bean));
+    }
+    
+    @Test
+    public void primitiveField() throws Exception {
+        
+        InjectionPoint<?> ip =
+            InjectionPointImpl.getInjectionPoint(
+                Bean.class.getDeclaredField("count"), null );
+        
+        Bean bean = new Bean();
+        ip.set(bean,42L);
+        Assert.assertEquals(42L,bean.count);
+        
+        // Widening conversion
+        ip.set(bean,7);
+        Assert.assertEquals(7L,bean.count);
+        Assert.assertEquals(7L,ip.get(bean));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void primitiveFieldNull() throws Exception {
+        InjectionPoint<?> ip =
+            InjectionPointImpl.getInjectionPoint(
+                Bean.class.getDeclaredField("count"), null );
+        ip.set(new Bean(),null);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void fieldWrongTarget() throws Exception {
+        InjectionPoint<?> ip =
+            InjectionPointImpl.getInjectionPoint(
+                Bean.class.getDeclaredField("name"), null );
+        ip.set("foo","bar");
+    }
+    
+    @Test
+    public void method() throws Exception {
+        
+        InjectionPoint<?> ip =
+            InjectionPointImpl.getInjectionPoint(
+                Bean.class.getMethod("setSize",int.class), null );
+        Assert.assertTrue( ip instanceof InjectionPointMethodHandleImpl );
+        
+        Bean bean = new Bean();
+        ip.set(bean,3);
+        Assert.assertEquals(3,bean.size);
+        Assert.assertEquals(3,ip.get(bean));
+        
+        try {
+            ip.set(bean,-1);
+            Assert.fail();
+        }
+        catch( InvocationTargetException ite ) {
+            Assert.assertTrue(
+                ite.getCause() instanceof IllegalArgumentException );
+        }
+    }
+    
+    @Test
+    public void primitiveAccessors() throws Exception {
+        
+        InjectionPoint<?> field =
+            InjectionPointImpl.getInjectionPoint(
+                Bean.class.getDeclaredField("count"), null );
+        InjectionPoint<?> method =
+            InjectionPointImpl.getInjectionPoint(
+                Bean.class.getMethod("setSize",int.class), null );
+        
+        Bean bean = new Bean();
+        field.setLong(bean,5L);
+        Assert.assertEquals(5L,field.getLong(bean));
+        field.setInt(bean,6);
+        Assert.assertEquals(6L,bean.count);
+        Assert.assertEquals(6d,field.getDouble(bean),0d);
+        
+        method.setInt(bean,8);
+        Assert.assertEquals(8,bean.size);
+        Assert.assertEquals(8,method.getInt(bean));
+        Assert.assertEquals(8L,method.getLong(bean));
+        
+        // Narrowing conversions are rejected
+        try {
+            field.getInt(bean);
+            Assert.fail();
+        }
+        catch( IllegalArgumentException iae ) {}
+        try {
+            method.setLong(bean,9L);
+            Assert.fail();
+        }
+        catch( IllegalArgumentException iae ) {}
+    }
+    
+    @Test
+    public void staticGetter() throws Exception {
+        
+        InjectionPoint<?> ip =
+            InjectionPointImpl.getInjectionPoint(
+                StaticGetterBean.class.getMethod("setS",String.class), null );
+        Assert.assertTrue( ip instanceof InjectionPointMethodHandleImpl );
+        
+        StaticGetterBean bean = new StaticGetterBean();
+        ip.set(bean,"foo");
+        Assert.assertEquals("foo",ip.get(bean));
+        
+        ip =
+            new InjectionPointMethodHandleImpl<>(
+                StaticGetterBean.class.getMethod("setS",String.class),
+                StaticGetterBean.class.getMethod("getS"), null );
+        Assert.assertEquals("foo",ip.get(bean));
+    }
+    
+    static class Bean {
+        private String name;
+        private long count;
+        private int size;
+        public int getSize() { return size; }
+        public void setSize( int size ) {
+            if( size < 0 ) {
+                throw new IllegalArgumentException();
+            }
+            this.size = size;
+        }
+    }
+    
+    public static class StaticGetterBean {
+        private static String s;
+        public static String getS() { return s; }
+        public void setS( String s ) { StaticGetterBean.s = s; }
+    }
+}
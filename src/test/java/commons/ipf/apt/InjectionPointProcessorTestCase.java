@@ -0,0 +1,231 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.ipf.apt;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import commons.ipf.CompositeInjectionPointHashMap;
+import commons.ipf.GeneratedInjectionPoint;
+import commons.ipf.InjectionPoint;
+
+/**
+ * Class for testing the functionalities of the {@link
+ * InjectionPointProcessor} class.
+ * 
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class InjectionPointProcessorTestCase {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private ClassLoader loader;
+    
+    @Before
+    public void setUp() throws Exception {
+        
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assume.assumeNotNull(compiler);
+        
+        File src = folder.newFolder("src");
+        File out = folder.newFolder("out");
+        write(src,"Prop",
+            "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)\n"+
+            "public @interface Prop { String name() default \"\"; }");
+        write(src,"Base",
+            "public class Base {\n"+
+            "  @Prop protected int count;\n"+
+            "  String label;\n"+
+            "  @Prop public void setLabel( String label ) { this.label = label; }\n"+
+            "  public String getLabel() { return label; }\n"+
+            "}");
+        write(src,"Bean",
+            "public class Bean extends Base {\n"+
+            "  @Prop(name=\"other\") java.util.List<String> items;\n"+
+            "  @Override @Prop public void setLabel( String label ) {\n"+
+            "    super.setLabel(label.toUpperCase());\n"+
+            "  }\n"+
+            "}");
+        write(src,"Hidden",
+            "public class Hidden {\n"+
+            "  @Prop private String secret;\n"+
+            "}");
+        
+        try( StandardJavaFileManager fm =
+                compiler.getStandardFileManager(null,null,null) ) {
+            fm.setLocation(StandardLocation.CLASS_OUTPUT,Collections.singleton(out));
+            fm.setLocation(StandardLocation.SOURCE_OUTPUT,Collections.singleton(out));
+            Iterable<? extends JavaFileObject> units =
+                fm.getJavaFileObjects(new File(src,"gen").listFiles());
+            List<String> options = Arrays.asList(
+                "-classpath", System.getProperty("java.class.path"),
+                "-A"+InjectionPointProcessor.OPTION+"=gen.Prop" );
+            JavaCompiler.CompilationTask task =
+                compiler.getTask(null,fm,null,options,null,units);
+            task.setProcessors(
+                Collections.singleton(new InjectionPointProcessor()) );
+            Assert.assertTrue( task.call() );
+        }
+        
+        loader = new URLClassLoader(
+            new URL[]{out.toURI().toURL()}, getClass().getClassLoader() );
+    }
+    
+    @Test
+    public void generated() throws Exception {
+        
+        Class<?> cl = loader.loadClass("gen.Bean");
+        loader.loadClass("gen.Bean$$InjectionPoints");
+        CompositeInjectionPointHashMap ipm =
+            new CompositeInjectionPointHashMap(cl,"gen.Prop");
+        ipm.putAll();
+        Assert.assertEquals(
+            new HashSet<>(Arrays.asList("count","label","other")), ipm.keySet() );
+        for (InjectionPoint<?> ip : ipm.values()) {
+            Assert.assertTrue( ip instanceof GeneratedInjectionPoint );
+            Assert.assertEquals( "gen.Prop", ip.getAnnotation().annotationType().getName() );
+        }
+        
+        Object bean = cl.getConstructor().newInstance();
+        ipm.get("count").set(bean,12);
+        ipm.get("label").set(bean,"abc");
+        ipm.get("other").set(bean,Arrays.asList("x"));
+        Assert.assertEquals( 12, ipm.get("count").get(bean) );
+        Assert.assertEquals( "ABC", ipm.get("label").get(bean) );
+        Assert.assertEquals( Arrays.asList("x"), ipm.get("other").get(bean) );
+        Assert.assertEquals( int.class, ipm.get("count").getType() );
+        
+        ipm.get("count").setInt(bean,13);
+        Assert.assertEquals( 13L, ipm.get("count").getLong(bean) );
+    }
+    
+    @Test
+    public void illegalArguments() throws Exception {
+        
+        Class<?> cl = loader.loadClass("gen.Bean");
+        CompositeInjectionPointHashMap ipm =
+            new CompositeInjectionPointHashMap(cl,"gen.Prop");
+        ipm.putAll();
+        Object bean = cl.getConstructor().newInstance();
+        
+        // Same exceptions as with reflection, for fields and setters
+        assertIllegalArgument(ipm.get("count"),bean,"0");
+        assertIllegalArgument(ipm.get("count"),bean,null);
+        assertIllegalArgument(ipm.get("label"),bean,0);
+        assertIllegalArgument(ipm.get("label"),"not a bean","abc");
+        
+        // Exceptions thrown by the setter are wrapped
+        try {
+            ipm.get("label").set(bean,null);
+            Assert.fail();
+        }
+        catch( InvocationTargetException ite ) {
+            Assert.assertTrue( ite.getCause() instanceof NullPointerException );
+        }
+    }
+    
+    @Test
+    public void illegalTargets() throws Exception {
+        
+        Class<?> cl = loader.loadClass("gen.Bean");
+        CompositeInjectionPointHashMap ipm =
+            new CompositeInjectionPointHashMap(cl,"gen.Prop");
+        ipm.putAll();
+        
+        // Same exception as with reflection, for fields and getters
+        for (String name : Arrays.asList("count","label","other")) {
+            InjectionPoint<?> ip = ipm.get(name);
+            Assert.assertTrue( ip instanceof GeneratedInjectionPoint );
+            try {
+                ip.get("not a bean");
+                Assert.fail();
+            }
+            catch( IllegalArgumentException iae ) {}
+        }
+        try {
+            ipm.get("count").getInt("not a bean");
+            Assert.fail();
+        }
+        catch( IllegalArgumentException iae ) {}
+    }
+    
+    @Test
+    public void fallback() throws Exception {
+        
+        // Private members are left to introspection
+        Class<?> cl = loader.loadClass("gen.Hidden");
+        CompositeInjectionPointHashMap ipm =
+            new CompositeInjectionPointHashMap(cl,"gen.Prop");
+        ipm.putAll();
+        InjectionPoint<?> ip = ipm.get("secret");
+        Assert.assertFalse( ip instanceof GeneratedInjectionPoint );
+        
+        Object hidden = cl.getConstructor().newInstance();
+        ip.set(hidden,"s");
+        Assert.assertEquals( "s", ip.get(hidden) );
+    }
+    
+    private static void assertIllegalArgument(
+        InjectionPoint<?> ip, Object target, Object value ) throws Exception {
+        
+        Assert.assertTrue( ip instanceof GeneratedInjectionPoint );
+        try {
+            ip.set(target,value);
+            Assert.fail();
+        }
+        catch( IllegalArgumentException iae ) {}
+    }
+    
+    private static void write( File src, String name, String body )
+    throws Exception {
+        File dir = new File(src,"gen");
+        dir.mkdirs();
+        String content = "package gen;\n\n"+body+"\n";
+        Files.write(
+            new File(dir,name+".java").toPath(),
+            content.getBytes(StandardCharsets.UTF_8) );
+    }
+}
@@ -24,7 +24,12 @@
 package commons.lang;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.rmi.Remote;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -43,6 +48,54 @@ public class ClassHelperTestCase {
 		Assert.assertArrayEquals(expecteds,tps);
 	}
 	
+	@Test
+	public void testGetAllFields() throws NoSuchFieldException {
+		Field[] fields = ClassHelper.getAllFields(Sub.class);
+		List<Field> actuals = new ArrayList<>();
+		for (Field field : fields) {
+			// Skip fields added by code coverage tools
+			if( ! field.isSynthetic() ) {
+				actuals.add(field);
+			}
+		}
+		List<Field> expecteds = Arrays.asList(
+			Sub.class.getDeclaredField("b"), Base.class.getDeclaredField("a") );
+		Assert.assertEquals(expecteds,actuals);
+		
+		// New instances are returned
+		Field[] others = ClassHelper.getAllFields(Sub.class);
+		Assert.assertNotSame(fields,others);
+		for ( int i=0 ; i < fields.length ; i++ ) {
+			Assert.assertNotSame(fields[i],others[i]);
+		}
+		Assert.assertEquals(0,ClassHelper.getAllFields(Object.class).length);
+	}
+	
+	@Test
+	public void testGetAllUnAnnotatedSetterMethods() {
+		Method setter =
+			ClassHelper.getAllUnAnnotatedSetterMethods(Sub.class).get("a");
+		Assert.assertNotNull(setter);
+		setter.setAccessible(true);
+		
+		// Cached instances are not returned
+		Method other =
+			ClassHelper.getAllUnAnnotatedSetterMethods(Sub.class).get("a");
+		Assert.assertEquals(setter,other);
+		Assert.assertFalse(other.isAccessible());
+	}
+	
+	@SuppressWarnings("unused")
+	private static class Base {
+		private int a;
+		void setA( int a ) { this.a = a; }
+	}
+	
+	@SuppressWarnings("unused")
+	private static class Sub extends Base {
+		private int b;
+	}
+	
 	final private static class
 		C<T,S extends Serializable & Remote,R extends Comparable<? super T>> {
 	}
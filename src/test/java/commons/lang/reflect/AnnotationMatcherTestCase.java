@@ -0,0 +1,108 @@
+/***
+ * Commons
+ * Copyright (C) 2015 University of Lille 1
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ *
+ * Contact: Lionel.Seinturier@univ-lille1.fr
+ *
+ * Author: Lionel Seinturier
+ */
+
+package commons.lang.reflect;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.reflect.Field;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class for testing the functionalities of the {@link AnnotationMatcher}
+ * class.
+ *
+ * @author Lionel Seinturier <Lionel.Seinturier@univ-lille1.fr>
+ */
+public class AnnotationMatcherTestCase {
+
+    private Field both, second, none;
+
+    @Before
+    public void setUp() throws NoSuchFieldException {
+        both = Target.class.getDeclaredField("both");
+        second = Target.class.getDeclaredField("second");
+        none = Target.class.getDeclaredField("none");
+    }
+
+    @Test
+    public void matchByName() {
+
+        AnnotationMatcher matcher =
+            new AnnotationMatcher(First.class.getName(),Second.class.getName());
+        Assert.assertEquals(First.class,matcher.match(both).annotationType());
+        Assert.assertEquals(Second.class,matcher.match(second).annotationType());
+        Assert.assertNull(matcher.match(none));
+        Assert.assertTrue(matcher.matches(second));
+        Assert.assertFalse(matcher.matches(none));
+
+        // The order of the names gives the priority
+        matcher =
+            new AnnotationMatcher(Second.class.getName(),First.class.getName());
+        Assert.assertEquals(Second.class,matcher.match(both).annotationType());
+    }
+
+    @Test
+    public void matchByType() {
+
+        AnnotationMatcher matcher =
+            AnnotationMatcher.ofTypes(Second.class,First.class);
+        Assert.assertEquals(Second.class,matcher.match(both).annotationType());
+        Assert.assertNull(matcher.match(none));
+
+        Annotation annot =
+            AnnotatedElementHelper.getAnnotationByType(both,First.class,Second.class);
+        Assert.assertEquals(First.class,annot.annotationType());
+        annot =
+            AnnotatedElementHelper.getAnnotation(second,Second.class.getName());
+        Assert.assertEquals(Second.class,annot.annotationType());
+        annot =
+            AnnotatedElementHelper.getMatchingAnnotation(
+                both,AnnotationMatcher.ofTypes(Second.class));
+        Assert.assertEquals(Second.class,annot.annotationType());
+    }
+    
+    @Test
+    public void noTypes() {
+        Assert.assertNull(AnnotatedElementHelper.getAnnotation(both));
+        Assert.assertNull(AnnotatedElementHelper.getAnnotationByType(both));
+        Assert.assertFalse(new AnnotationMatcher().matches(both));
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface First {}
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Second {}
+
+    @SuppressWarnings("unused")
+    private static class Target {
+        @Second @First private int both;
+        @Second private int second;
+        private int none;
+    }
+}
@@ -75,6 +75,39 @@ public class MethodHelperTestCase {
         Assert.assertArrayEquals(expecteds,actuals);
     }
     
+    @Test
+    public void getGetterForSetter() throws NoSuchMethodException {
+        
+        Method setter = Bean.class.getMethod("setName",String.class);
+        Assert.assertEquals(
+            Bean.class.getMethod("getName"),
+            MethodHelper.getGetterForSetter(setter) );
+        
+        // Inherited public getter
+        setter = Bean.class.getMethod("setId",int.class);
+        Assert.assertEquals(
+            Base.class.getMethod("getId"),
+            MethodHelper.getGetterForSetter(setter) );
+    }
+    
+    @Test(expected=NoSuchMethodException.class)
+    public void getGetterForSetterTypeMismatch() throws NoSuchMethodException {
+        Method setter = Bean.class.getMethod("setSize",long.class);
+        MethodHelper.getGetterForSetter(setter);
+    }
+    
+    public static class Base {
+        public int getId() { return 0; }
+    }
+    
+    public static class Bean extends Base {
+        public String getName() { return null; }
+        public void setName( String name ) {}
+        public void setId( int id ) {}
+        public int getSize() { return 0; }
+        public void setSize( long size ) {}
+    }
+    
     @SuppressWarnings("unused")
     private static class Src {
         protected String context;